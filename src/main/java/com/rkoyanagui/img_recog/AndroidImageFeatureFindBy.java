@@ -5,6 +5,8 @@ import static com.rkoyanagui.img_recog.impl.ImageFilter.GRAY;
 import com.rkoyanagui.img_recog.AndroidImageFeatureFindBy.AndroidImageFeatureFindByBuilder;
 import com.rkoyanagui.img_recog.FeatureMatchingBy.FeatureMatchingByBuilder;
 import com.rkoyanagui.img_recog.ImgRecogBy.ImgRecogByBuilderFromAnnotation;
+import com.rkoyanagui.img_recog.impl.DescriptorMatching;
+import com.rkoyanagui.img_recog.impl.GeometricVerification;
 import com.rkoyanagui.img_recog.impl.ImageFilter;
 import com.rkoyanagui.img_recog.impl.ImgRecogConst.FeatureMatching;
 import com.rkoyanagui.utils.MobilePlatform;
@@ -16,9 +18,8 @@ import java.lang.reflect.Field;
 
 /**
  * Locates an image in a mobile Android device's screen, using the <i>feature matching</i> method.
- * Please do not apply to fields of the type {@code Collection<Element> }! The feature matching
- * image recognition method cannot be used to find lists of elements. It can only be used to find
- * single elements.
+ * When applied to a field of the type {@code List<ImgRecogElement>}, every occurrence of the image
+ * is located, each one having at least {@link #minNumOfMatches()} matches of its own.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.FIELD)
@@ -68,9 +69,33 @@ public @interface AndroidImageFeatureFindBy
   /** See {@link FeatureMatchingBy#fastThreshold}. */
   int fastThreshold() default FeatureMatching.FAST_THRESHOLD;
 
+  /** See {@link FeatureMatchingBy#descriptorMatching}. */
+  DescriptorMatching descriptorMatching() default DescriptorMatching.BRUTE_FORCE;
+
+  /** See {@link FeatureMatchingBy#ratioThreshold}. */
+  float ratioThreshold() default FeatureMatching.RATIO_THRESHOLD;
+
+  /** See {@link FeatureMatchingBy#verification}. */
+  GeometricVerification verification() default GeometricVerification.HOMOGRAPHY;
+
+  /** See {@link FeatureMatchingBy#reprojectionThreshold}. */
+  double reprojectionThreshold() default FeatureMatching.REPROJECTION_THRESHOLD;
+
+  /** See {@link FeatureMatchingBy#maxIters}. */
+  int maxIters() default FeatureMatching.MAX_ITERS;
+
+  /** See {@link FeatureMatchingBy#confidence}. */
+  double confidence() default FeatureMatching.CONFIDENCE;
+
+  /** See {@link FeatureMatchingBy#downscale}. */
+  boolean downscale() default false;
+
   /** See {@link FeatureMatchingBy#filters}. */
   ImageFilter[] filters() default {GRAY};
 
+  /** See {@link FeatureMatchingBy#filterVariants}. */
+  Filters[] filterVariants() default {};
+
   /** An array in the order {@code x, y, width, height}. See {@link ImgRecogBy#offset}. */
   float[] offset() default {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
 
@@ -120,7 +145,15 @@ public @interface AndroidImageFeatureFindBy
           .scoreType(ann.scoreType())
           .patchSize(ann.patchSize())
           .fastThreshold(ann.fastThreshold())
+          .descriptorMatching(ann.descriptorMatching())
+          .ratioThreshold(ann.ratioThreshold())
+          .verification(ann.verification())
+          .reprojectionThreshold(ann.reprojectionThreshold())
+          .maxIters(ann.maxIters())
+          .confidence(ann.confidence())
+          .downscale(ann.downscale())
           .filters(ann.filters())
+          .filterVariants(ImgRecogBy.toFilterChains(ann.filterVariants()))
           .build();
     }
 
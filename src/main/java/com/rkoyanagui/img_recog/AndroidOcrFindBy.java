@@ -7,6 +7,8 @@ import com.rkoyanagui.img_recog.impl.ImageFilter;
 import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
 import com.rkoyanagui.img_recog.impl.OcrCleanUp;
 import com.rkoyanagui.img_recog.impl.OcrTest;
+import com.rkoyanagui.img_recog.impl.TextDetector;
+import com.rkoyanagui.img_recog.impl.TextRecogniser;
 import com.rkoyanagui.utils.MobilePlatform;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -36,6 +38,9 @@ public @interface AndroidOcrFindBy
   /** See {@link OcrMatchingBy#ocrTest}. */
   OcrTest test() default OcrTest.EQUALS_IGNORE_CASE;
 
+  /** See {@link OcrMatchingBy#maxEditDistance}. */
+  int maxEditDistance() default OcrMatching.MAX_EDIT_DISTANCE;
+
   /** See {@link OcrMatchingBy#nms}. */
   float nms() default OcrMatching.NMS_THRESHOLD;
 
@@ -49,6 +54,9 @@ public @interface AndroidOcrFindBy
   /** See {@link OcrMatchingBy#filters}. */
   ImageFilter[] filters() default {};
 
+  /** See {@link OcrMatchingBy#filterVariants}. */
+  Filters[] filterVariants() default {};
+
   /** An array in the order {@code x, y, width, height}. See {@link ImgRecogBy#offset}. */
   float[] offset() default {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
 
@@ -58,6 +66,42 @@ public @interface AndroidOcrFindBy
   /** See {@link OcrMatchingBy#cleanUp} */
   OcrCleanUp[] cleanUp() default OcrCleanUp.TRIM;
 
+  /** See {@link OcrMatchingBy#minInputPixels}. */
+  int minInputPixels() default OcrMatching.MIN_INPUT_PIXELS;
+
+  /** See {@link OcrMatchingBy#maxInputPixels}. */
+  int maxInputPixels() default OcrMatching.MAX_INPUT_PIXELS;
+
+  /** See {@link OcrMatchingBy#earlyStop}. */
+  boolean earlyStop() default false;
+
+  /** See {@link OcrMatchingBy#minTextConfidence}. */
+  int minTextConfidence() default OcrMatching.MIN_TEXT_CONFIDENCE;
+
+  /** See {@link OcrMatchingBy#lengthTolerance}. */
+  double lengthTolerance() default OcrMatching.LENGTH_TOLERANCE;
+
+  /** See {@link OcrMatchingBy#textDetectors}. */
+  TextDetector[] textDetectors() default TextDetector.EAST;
+
+  /** See {@link OcrMatchingBy#language}. */
+  String language() default "";
+
+  /** See {@link OcrMatchingBy#charWhitelist}. */
+  String charWhitelist() default "";
+
+  /** See {@link OcrMatchingBy#pageSegMode}. */
+  int pageSegMode() default OcrMatching.PAGE_SEGMENTATION_MODE;
+
+  /** See {@link OcrMatchingBy#dpi}. */
+  int dpi() default OcrMatching.DPI;
+
+  /** See {@link OcrMatchingBy#textRecogniser}. */
+  TextRecogniser textRecogniser() default TextRecogniser.TESSERACT;
+
+  /** See {@link OcrMatchingBy#glyphSet}. */
+  String glyphSet() default "";
+
   class AndroidOcrFindByBuilder extends
       OcrMatchingByBuilder<OcrMatchingBy, AndroidOcrFindByBuilder> implements
       ImgRecogByBuilderFromAnnotation<OcrMatchingBy>
@@ -91,11 +135,25 @@ public @interface AndroidOcrFindBy
           .searchTerm(ann.searchTerm())
           .minScore(ann.minScore())
           .ocrTest(ann.test())
+          .maxEditDistance(ann.maxEditDistance())
           .nms(ann.nms())
           .iou(ann.iou())
           .padding(new Padding(ann.pad()[0], ann.pad()[1], ann.pad()[2], ann.pad()[3]))
           .cleanUp(ann.cleanUp())
           .filters(ann.filters())
+          .filterVariants(ImgRecogBy.toFilterChains(ann.filterVariants()))
+          .minInputPixels(ann.minInputPixels())
+          .maxInputPixels(ann.maxInputPixels())
+          .earlyStop(ann.earlyStop())
+          .minTextConfidence(ann.minTextConfidence())
+          .lengthTolerance(ann.lengthTolerance())
+          .textDetectors(ann.textDetectors())
+          .language(ann.language())
+          .charWhitelist(ann.charWhitelist())
+          .pageSegMode(ann.pageSegMode())
+          .dpi(ann.dpi())
+          .textRecogniser(ann.textRecogniser())
+          .glyphSet(ann.glyphSet())
           .build();
     }
 
@@ -1,7 +1,10 @@
 package com.rkoyanagui.img_recog;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
+import com.rkoyanagui.img_recog.impl.DescriptorMatching;
+import com.rkoyanagui.img_recog.impl.GeometricVerification;
 import com.rkoyanagui.img_recog.impl.ImageFilter;
 import java.util.Arrays;
 import java.util.Objects;
@@ -21,15 +24,16 @@ public class FeatureMatchingBy extends ImgRecogBy
   protected Integer trainImgFeatures;
   /**
    * Minimum number of feature matches to consider the match attempt as successful. Should be
-   * greater than or equal to eight. It is impossible to derive location data from less than eight
-   * key feature points. A number around twenty should be adequate.
+   * greater than or equal to twice {@link GeometricVerification#minimalSampleSize} of the chosen
+   * {@link #verification}, i.e., eight for a homography. It is impossible to derive reliable
+   * location data from fewer key feature points. A number around twenty should be adequate.
    */
   protected Integer minNumOfMatches;
   /**
    * Of the total number of feature matches found, how many to keep when calculating position and
-   * dimensions. Should be greater than or equal to eight. This is just a maximum cap, so it can be
-   * less, equal to, or greater than {@link #minNumOfMatches}. A number around twenty should be
-   * adequate.
+   * dimensions. Should be greater than or equal to {@link #minNumOfMatches}'s lower bound. This is
+   * just a maximum cap, so it can be less, equal to, or greater than {@link #minNumOfMatches}. A
+   * number around twenty should be adequate.
    */
   protected Integer numOfMatchesToKeep;
   /**
@@ -66,10 +70,64 @@ public class FeatureMatchingBy extends ImgRecogBy
   protected Integer patchSize;
   /** See {@link org.opencv.features2d.ORB#create(int, float, int, int, int, int, int, int, int)} */
   protected Integer fastThreshold;
+  /**
+   * How to pair up query and training descriptors. See {@link DescriptorMatching}. If null, then
+   * {@link DescriptorMatching#BRUTE_FORCE} is used.
+   */
+  protected DescriptorMatching descriptorMatching;
+  /**
+   * A match is kept only if its distance is less than this fraction of the distance to the second
+   * nearest neighbour (Lowe's ratio test). Used with {@link DescriptorMatching#FLANN_LSH}, where it
+   * is required, and with {@link DescriptorMatching#BRUTE_FORCE} when locating every occurrence of
+   * an element, which matches descriptors one way, without cross-checking, where {@code 0.75} is
+   * used if null. Not used when locating a single element with {@link
+   * DescriptorMatching#BRUTE_FORCE}, which cross-checks its matches instead. Should be between 0
+   * and 1, exclusive. A number around 0.75 should be adequate. Lower numbers keep fewer but more
+   * distinctive matches.
+   */
+  protected Float ratioThreshold;
+  /**
+   * The transformation model the matches are verified against. See {@link GeometricVerification}.
+   * If null, then {@link GeometricVerification#HOMOGRAPHY} is used.
+   */
+  protected GeometricVerification verification;
+  /**
+   * Maximum distance, in pixels, between a training keypoint and the position its matching query
+   * keypoint is mapped to, for the match to count as an inlier. Should be greater than zero. If
+   * null, then 5.0 is used.
+   */
+  protected Double reprojectionThreshold;
+  /**
+   * Maximum number of iterations of the robust estimator. Should be greater than zero. If null,
+   * then 2000 is used. Lower numbers bound the cost of verifying poor matches.
+   */
+  protected Integer maxIters;
+  /**
+   * Level of confidence in the estimate, at which the robust estimator stops iterating. Should be
+   * between 0 and 1, exclusive. If null, then 0.995 is used. Lower numbers stop sooner.
+   */
+  protected Double confidence;
+  /**
+   * Whether to detect keypoints in downscaled copies of both images, which is considerably faster
+   * on high-resolution screens. The factor is chosen automatically, from the sizes of the query
+   * image and of the training image, so that the query image stays large enough to yield keypoints.
+   * Keypoints are mapped back to full-resolution coordinates, so this makes no difference to the
+   * located element's coordinates, but it may cost some precision. If null, then no downscaling is
+   * done.
+   */
+  protected Boolean downscale;
   /**
    * Filters to be applied to the images before matching them.
    */
   protected ImageFilter[] filters;
+  /**
+   * Alternative chains of filters to be applied to the images, each in place of {@link #filters}.
+   * The locator is then tried with {@link #filters} and with every variant at the same time, on the
+   * same screenshot, and the first of them to match wins, e.g., with and without {@link
+   * ImageFilter#NEGATIVE}. An element found remembers the chain that found it. Lookups cost more
+   * CPU, but fewer of them miss. If null or empty, then only {@link #filters} is used.
+   */
+  protected ImageFilter[][] filterVariants;
 
   /**
    * No-args constructor
@@ -100,7 +158,15 @@ public class FeatureMatchingBy extends ImgRecogBy
       this.scoreType = o.scoreType;
       this.patchSize = o.patchSize;
       this.fastThreshold = o.fastThreshold;
+      this.descriptorMatching = o.descriptorMatching;
+      this.ratioThreshold = o.ratioThreshold;
+      this.verification = o.verification;
+      this.reprojectionThreshold = o.reprojectionThreshold;
+      this.maxIters = o.maxIters;
+      this.confidence = o.confidence;
+      this.downscale = o.downscale;
       this.filters = o.filters;
+      this.filterVariants = o.filterVariants;
     }
   }
 
@@ -126,7 +192,15 @@ public class FeatureMatchingBy extends ImgRecogBy
         && Objects.equals(scoreType, that.scoreType)
         && Objects.equals(patchSize, that.patchSize)
         && Objects.equals(fastThreshold, that.fastThreshold)
-        && Arrays.equals(filters, that.filters);
+        && Objects.equals(descriptorMatching, that.descriptorMatching)
+        && Objects.equals(ratioThreshold, that.ratioThreshold)
+        && Objects.equals(verification, that.verification)
+        && Objects.equals(reprojectionThreshold, that.reprojectionThreshold)
+        && Objects.equals(maxIters, that.maxIters)
+        && Objects.equals(confidence, that.confidence)
+        && Objects.equals(downscale, that.downscale)
+        && Arrays.equals(filters, that.filters)
+        && Arrays.deepEquals(filterVariants, that.filterVariants);
   }
 
   @Override
@@ -134,8 +208,10 @@ public class FeatureMatchingBy extends ImgRecogBy
   {
     int result = Objects.hash(templateFilename, method, order, platform, queryImgFeatures,
         trainImgFeatures, minNumOfMatches, numOfMatchesToKeep, scaleFactor, nlevels, edgeThreshold,
-        firstLevel, wtaK, scoreType, patchSize, fastThreshold);
+        firstLevel, wtaK, scoreType, patchSize, fastThreshold, descriptorMatching, ratioThreshold,
+        verification, reprojectionThreshold, maxIters, confidence, downscale);
     result = 31 * result + Arrays.hashCode(filters);
+    result = 31 * result + Arrays.deepHashCode(filterVariants);
     return result;
   }
 
@@ -165,14 +241,21 @@ public class FeatureMatchingBy extends ImgRecogBy
     ImgRecogBy.verifyParam(tImgFeatures, p -> nonNull(p) && p > 0,
         () -> new IllegalArgumentException(msg2));
 
+    final GeometricVerification verification = nonNull(fParams.getVerification())
+        ? fParams.getVerification()
+        : GeometricVerification.HOMOGRAPHY;
+    final int minOfMatches = 2 * verification.minimalSampleSize;
+
     final Integer minMatches = fParams.getMinNumOfMatches();
-    final String msg3 = String.format("Expected minNumOfMatches >= 8 but was '%d'", minMatches);
-    ImgRecogBy.verifyParam(minMatches, p -> nonNull(p) && p >= 8,
+    final String msg3 = String.format("Expected minNumOfMatches >= %d but was '%d'",
+        minOfMatches, minMatches);
+    ImgRecogBy.verifyParam(minMatches, p -> nonNull(p) && p >= minOfMatches,
         () -> new IllegalArgumentException(msg3));
 
     final Integer numToKeep = fParams.getNumOfMatchesToKeep();
-    final String msg4 = String.format("Expected numOfMatchesToKeep >= 8 but was '%d'", numToKeep);
-    ImgRecogBy.verifyParam(numToKeep, p -> nonNull(p) && p >= 8,
+    final String msg4 = String.format("Expected numOfMatchesToKeep >= %d but was '%d'",
+        minOfMatches, numToKeep);
+    ImgRecogBy.verifyParam(numToKeep, p -> nonNull(p) && p >= minOfMatches,
         () -> new IllegalArgumentException(msg4));
 
     final Float scaleFactor = fParams.getScaleFactor();
@@ -209,6 +292,32 @@ public class FeatureMatchingBy extends ImgRecogBy
     final String msg11 = String.format("Expected patchSize >= 2 but was '%d'", scoreType);
     ImgRecogBy.verifyParam(patchSize, p -> nonNull(p) && p >= 2,
         () -> new IllegalArgumentException(msg11));
+
+    if (fParams.getDescriptorMatching() == DescriptorMatching.FLANN_LSH)
+    {
+      final Float ratio = fParams.getRatioThreshold();
+      final String msg12 =
+          String.format("Expected 0.0 < ratioThreshold < 1.0 but was '%.4f'", ratio);
+      ImgRecogBy.verifyParam(ratio, p -> nonNull(p) && p > 0.0f && p < 1.0f,
+          () -> new IllegalArgumentException(msg12));
+    }
+
+    final Double reprojThresh = fParams.getReprojectionThreshold();
+    final String msg13 =
+        String.format("Expected reprojectionThreshold > 0.0 but was '%.4f'", reprojThresh);
+    ImgRecogBy.verifyParam(reprojThresh, p -> isNull(p) || p > 0.0,
+        () -> new IllegalArgumentException(msg13));
+
+    final Integer maxIters = fParams.getMaxIters();
+    final String msg14 = String.format("Expected maxIters > 0 but was '%d'", maxIters);
+    ImgRecogBy.verifyParam(maxIters, p -> isNull(p) || p > 0,
+        () -> new IllegalArgumentException(msg14));
+
+    final Double confidence = fParams.getConfidence();
+    final String msg15 =
+        String.format("Expected 0.0 < confidence < 1.0 but was '%.4f'", confidence);
+    ImgRecogBy.verifyParam(confidence, p -> isNull(p) || (p > 0.0 && p < 1.0),
+        () -> new IllegalArgumentException(msg15));
   }
 
   public Integer getQueryImgFeatures()
@@ -271,11 +380,51 @@ public class FeatureMatchingBy extends ImgRecogBy
     return this.fastThreshold;
   }
 
+  public DescriptorMatching getDescriptorMatching()
+  {
+    return this.descriptorMatching;
+  }
+
+  public Float getRatioThreshold()
+  {
+    return this.ratioThreshold;
+  }
+
+  public GeometricVerification getVerification()
+  {
+    return this.verification;
+  }
+
+  public Double getReprojectionThreshold()
+  {
+    return this.reprojectionThreshold;
+  }
+
+  public Integer getMaxIters()
+  {
+    return this.maxIters;
+  }
+
+  public Double getConfidence()
+  {
+    return this.confidence;
+  }
+
+  public Boolean getDownscale()
+  {
+    return this.downscale;
+  }
+
   public ImageFilter[] getFilters()
   {
     return this.filters;
   }
 
+  public ImageFilter[][] getFilterVariants()
+  {
+    return this.filterVariants;
+  }
+
   @Override
   public String toString()
   {
@@ -285,8 +434,13 @@ public class FeatureMatchingBy extends ImgRecogBy
         + ", scaleFactor=" + this.getScaleFactor() + ", nlevels=" + this.getNlevels()
         + ", edgeThreshold=" + this.getEdgeThreshold() + ", firstLevel=" + this.getFirstLevel()
         + ", wtaK=" + this.getWtaK() + ", scoreType=" + this.getScoreType() + ", patchSize="
-        + this.getPatchSize() + ", fastThreshold=" + this.getFastThreshold() + ", filters="
-        + Arrays.deepToString(this.getFilters()) + ")";
+        + this.getPatchSize() + ", fastThreshold=" + this.getFastThreshold()
+        + ", descriptorMatching=" + this.getDescriptorMatching() + ", ratioThreshold="
+        + this.getRatioThreshold() + ", verification=" + this.getVerification()
+        + ", reprojectionThreshold=" + this.getReprojectionThreshold() + ", maxIters="
+        + this.getMaxIters() + ", confidence=" + this.getConfidence() + ", downscale="
+        + this.getDownscale() + ", filters=" + Arrays.deepToString(this.getFilters())
+        + ", filterVariants=" + Arrays.deepToString(this.getFilterVariants()) + ")";
   }
 
   public static FeatureMatchingByBuilder<FeatureMatchingBy, FeatureMatchingByBuilderImpl> builder()
@@ -395,6 +549,55 @@ public class FeatureMatchingBy extends ImgRecogBy
       return self();
     }
 
+    /** See {@link FeatureMatchingBy#descriptorMatching}. */
+    public B descriptorMatching(DescriptorMatching descriptorMatching)
+    {
+      ((FeatureMatchingBy) super.memo).descriptorMatching = descriptorMatching;
+      return self();
+    }
+
+    /** See {@link FeatureMatchingBy#ratioThreshold}. */
+    public B ratioThreshold(Float ratioThreshold)
+    {
+      ((FeatureMatchingBy) super.memo).ratioThreshold = ratioThreshold;
+      return self();
+    }
+
+    /** See {@link FeatureMatchingBy#verification}. */
+    public B verification(GeometricVerification verification)
+    {
+      ((FeatureMatchingBy) super.memo).verification = verification;
+      return self();
+    }
+
+    /** See {@link FeatureMatchingBy#reprojectionThreshold}. */
+    public B reprojectionThreshold(Double reprojectionThreshold)
+    {
+      ((FeatureMatchingBy) super.memo).reprojectionThreshold = reprojectionThreshold;
+      return self();
+    }
+
+    /** See {@link FeatureMatchingBy#maxIters}. */
+    public B maxIters(Integer maxIters)
+    {
+      ((FeatureMatchingBy) super.memo).maxIters = maxIters;
+      return self();
+    }
+
+    /** See {@link FeatureMatchingBy#confidence}. */
+    public B confidence(Double confidence)
+    {
+      ((FeatureMatchingBy) super.memo).confidence = confidence;
+      return self();
+    }
+
+    /** See {@link FeatureMatchingBy#downscale}. */
+    public B downscale(Boolean downscale)
+    {
+      ((FeatureMatchingBy) super.memo).downscale = downscale;
+      return self();
+    }
+
     /** See {@link FeatureMatchingBy#filters}. */
     public B filters(ImageFilter[] filters)
     {
@@ -402,6 +605,13 @@ public class FeatureMatchingBy extends ImgRecogBy
       return self();
     }
 
+    /** See {@link FeatureMatchingBy#filterVariants}. */
+    public B filterVariants(ImageFilter[][] filterVariants)
+    {
+      ((FeatureMatchingBy) super.memo).filterVariants = filterVariants;
+      return self();
+    }
+
     protected abstract B self();
 
     public abstract C build();
@@ -0,0 +1,20 @@
+package com.rkoyanagui.img_recog;
+
+import com.rkoyanagui.img_recog.impl.ImageFilter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A chain of image filters, as one of the {@code filterVariants} of a locator annotation, e.g.,
+ * {@code filterVariants = {@Filters({GRAY, OTSU}), @Filters({GRAY, NEGATIVE, OTSU})}}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface Filters
+{
+
+  /** The filters, applied in order. */
+  ImageFilter[] value();
+
+}
@@ -3,6 +3,7 @@ package com.rkoyanagui.img_recog;
 import static java.util.Objects.nonNull;
 
 import com.google.common.collect.ImmutableList;
+import com.rkoyanagui.img_recog.impl.ImageFilter;
 import java.lang.reflect.Field;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -81,6 +82,19 @@ public abstract class ImgRecogBy
     }
   }
 
+  /**
+   * @return the chains of filters the annotations describe, in the same order
+   */
+  protected static ImageFilter[][] toFilterChains(final Filters[] filterVariants)
+  {
+    final ImageFilter[][] chains = new ImageFilter[filterVariants.length][];
+    for (int i = 0; i < filterVariants.length; i++)
+    {
+      chains[i] = filterVariants[i].value();
+    }
+    return chains;
+  }
+
   public String getTemplateFilename()
   {
     return this.templateFilename;
@@ -1,8 +1,14 @@
 package com.rkoyanagui.img_recog;
 
+import static java.util.Objects.isNull;
+
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
+import javax.imageio.ImageIO;
 import org.openqa.selenium.Rectangle;
 
 public interface ImgRecogEngine
@@ -67,4 +73,28 @@ public interface ImgRecogEngine
    */
   Optional<String> recognise(BufferedImage img, Rectangle rectangle);
 
+  /**
+   * Performs text recognition using <a href="https://tesseract-ocr.github.io/">Tesseract</a>. By
+   * default, decodes the image with {@link ImageIO#read} and delegates to {@link
+   * #recognise(BufferedImage, Rectangle)}. Implementations may override this to skip the
+   * conversion, e.g., to reuse an image they already decoded.
+   *
+   * @param img       the image to be OCR'ed, encoded as PNG, JPEG...
+   * @param rectangle the bounding box telling what area of the image should be OCR'ed
+   * @return the text, if any was recognised, or nothing, if the image could not be decoded
+   */
+  default Optional<String> recognise(final byte[] img, final Rectangle rectangle)
+  {
+    final BufferedImage decoded;
+    try
+    {
+      decoded = ImageIO.read(new ByteArrayInputStream(img));
+    }
+    catch (IOException x)
+    {
+      throw new UncheckedIOException("Could not decode the image to be OCR'ed.", x);
+    }
+    return isNull(decoded) ? Optional.empty() : recognise(decoded, rectangle);
+  }
+
 }
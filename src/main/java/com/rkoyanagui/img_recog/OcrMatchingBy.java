@@ -1,10 +1,14 @@
 package com.rkoyanagui.img_recog;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import com.rkoyanagui.img_recog.impl.ImageFilter;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
 import com.rkoyanagui.img_recog.impl.OcrCleanUp;
 import com.rkoyanagui.img_recog.impl.OcrTest;
+import com.rkoyanagui.img_recog.impl.TextDetector;
+import com.rkoyanagui.img_recog.impl.TextRecogniser;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -24,6 +28,15 @@ public class OcrMatchingBy extends ImgRecogBy
   protected Float minScore;
   /** What test a piece of text must pass to be considered as successfully found. */
   protected OcrTest ocrTest;
+  /**
+   * With {@link OcrTest#FUZZY_EQUALS} or {@link OcrTest#FUZZY_CONTAINS}, how many characters may
+   * be inserted, deleted or substituted in the search term for a text to pass the test, besides
+   * characters OCR confuses, which do not count, e.g., with {@code 1}, {@code Entrar} also finds
+   * {@code Entar} and {@code Emtrar}. Should be greater than or equal to zero, and much less than
+   * the search term's length, or any text passes {@link OcrTest#FUZZY_CONTAINS}. If null, then
+   * {@code 1} is used.
+   */
+  protected Integer maxEditDistance;
   /**
    * The non-maximum suppression threshold, for filtering out redundant text bounding boxes (false
    * positives). Choose a value between {@code 0.0} and {@code 1.0}.
@@ -60,6 +73,102 @@ public class OcrMatchingBy extends ImgRecogBy
   protected OcrCleanUp[] cleanUp;
   /** Filters to be applied to the images before matching them. */
   protected ImageFilter[] filters;
+  /**
+   * Alternative chains of filters to be applied to the images, each in place of {@link #filters}.
+   * The locator is then tried with {@link #filters} and with every variant at the same time, on the
+   * same screenshot, and the first of them to match wins, e.g., with and without {@link
+   * ImageFilter#NEGATIVE}. An element found remembers the chain that found it. Lookups cost more
+   * CPU, but fewer of them miss. If null or empty, then only {@link #filters} is used.
+   */
+  protected ImageFilter[][] filterVariants;
+  /**
+   * Lower bound on the number of pixels fed to the text detector. Images, or cutouts, smaller than
+   * this are upscaled, keeping their aspect ratio. Should be greater than zero. If null, then
+   * {@code 160 * 160} is used.
+   */
+  protected Integer minInputPixels;
+  /**
+   * Upper bound on the number of pixels fed to the text detector. Images larger than this are
+   * downscaled, keeping their aspect ratio. The cost of text detection grows with this number, and
+   * so does its precision on large screens. Should be greater than or equal to {@link
+   * #minInputPixels}. If null, then {@code 640 * 640} is used.
+   */
+  protected Integer maxInputPixels;
+  /**
+   * If true, then {@link com.rkoyanagui.img_recog.impl.TesseractOcrMatcher#locateText} recognises
+   * text boxes from the most to the least promising one (by text detection score, and by how well
+   * each box's shape fits the search term's length), and stops as soon as a word passes the {@link
+   * #ocrTest} with a Tesseract confidence of at least {@link #minTextConfidence}. The word found
+   * may then not be the one with the highest score. Does not apply when locating several elements.
+   * If null, then false.
+   */
+  protected Boolean earlyStop;
+  /**
+   * With {@link #earlyStop}, the minimum confidence Tesseract must have in a word for the search to
+   * stop there. Choose a value between {@code 0} and {@code 100}. If null, then {@code 80} is used.
+   */
+  protected Integer minTextConfidence;
+  /**
+   * With {@link OcrTest#EQUALS}, {@link OcrTest#EQUALS_IGNORE_CASE} or {@link
+   * OcrTest#FUZZY_EQUALS}, how far the number of characters a text box seems to hold, judging by
+   * its aspect ratio, may be from the search term's length, for the box to be recognised at all. A
+   * tolerance {@code t} keeps boxes estimated to hold between {@code n / (1 + t)} and {@code n * (1
+   * + t)} characters, for a search term of {@code n} characters. If {@link #cleanUp} may remove
+   * characters, then only the lower bound applies. Should be greater than or equal to zero. If
+   * null, then {@code 1.0} is used (from half to double the search term's length).
+   */
+  protected Double lengthTolerance;
+  /**
+   * How to find the areas of the image where there may be text, to be recognised. Each detector is
+   * tried in turn, until text passing the {@link #ocrTest} is found, e.g., {@code {GRADIENT, EAST}}
+   * tries the cheap {@link TextDetector#GRADIENT} first, and only falls back on {@link
+   * TextDetector#EAST} if that fails. {@link #minScore}, {@link #nms}, {@link #minInputPixels} and
+   * {@link #maxInputPixels} only apply to {@link TextDetector#EAST}. If null or empty, then only
+   * {@link TextDetector#EAST} is used.
+   */
+  protected TextDetector[] textDetectors;
+  /**
+   * The language of Tesseract trained data to recognise the text with, e.g., {@code eng}, or
+   * {@code por+eng} for more than one. The trained data file must be in the {@code
+   * tesseract.datapath} directory. Each language's handles are loaded once, and kept for any other
+   * locator choosing the same language. Fewer languages recognise text faster, and one that
+   * matches the text better. If null or empty, then the {@code tesseract.language} system property
+   * is used, or {@code por+eng}.
+   */
+  protected String language;
+  /**
+   * The only characters Tesseract may recognise, e.g., {@code 0123456789,.} for prices, or {@code
+   * 0123456789} for one-time passwords. Anything else is read as the most similar of these. If
+   * null or empty, then any character may be recognised.
+   */
+  protected String charWhitelist;
+  /**
+   * The Tesseract page segmentation mode each text box is recognised in, e.g., {@code 7} to treat
+   * each box as a single line of text, or {@code 8} as a single word. Choose a value between
+   * {@code 3} and {@code 13}. Does not apply to {@link TextDetector#TESSERACT}, which reads sparse
+   * text. If null, then {@code 6} is used (a single uniform block of text).
+   */
+  protected Integer pageSegMode;
+  /**
+   * The resolution, in dots per inch, Tesseract assumes the image to have, which tells it how many
+   * pixels tall characters are expected to be. Should be greater than zero. If null, then {@code
+   * 70} is used.
+   */
+  protected Integer dpi;
+  /**
+   * How to recognise the text inside the areas where text was detected. {@link #language}, {@link
+   * #charWhitelist}, {@link #pageSegMode} and {@link #dpi} only apply to {@link
+   * TextRecogniser#TESSERACT}, and {@link #glyphSet} only to {@link TextRecogniser#GLYPHS}. Does
+   * not apply to {@link TextDetector#TESSERACT}, which always recognises text with Tesseract. If
+   * null, then {@link TextRecogniser#TESSERACT} is used.
+   */
+  protected TextRecogniser textRecogniser;
+  /**
+   * With {@link TextRecogniser#GLYPHS}, the path to the directory of glyphs to tell characters
+   * apart by, as built by {@link com.rkoyanagui.img_recog.impl.GlyphSetBuilder}. Required with
+   * {@link TextRecogniser#GLYPHS}.
+   */
+  protected String glyphSet;
 
   /**
    * No-args constructor
@@ -81,11 +190,25 @@ public class OcrMatchingBy extends ImgRecogBy
       this.searchTerm = o.searchTerm;
       this.minScore = o.minScore;
       this.ocrTest = o.ocrTest;
+      this.maxEditDistance = o.maxEditDistance;
       this.nms = o.nms;
       this.iou = o.iou;
       this.padding = o.padding;
       this.cleanUp = o.cleanUp;
       this.filters = o.filters;
+      this.filterVariants = o.filterVariants;
+      this.minInputPixels = o.minInputPixels;
+      this.maxInputPixels = o.maxInputPixels;
+      this.earlyStop = o.earlyStop;
+      this.minTextConfidence = o.minTextConfidence;
+      this.lengthTolerance = o.lengthTolerance;
+      this.textDetectors = o.textDetectors;
+      this.language = o.language;
+      this.charWhitelist = o.charWhitelist;
+      this.pageSegMode = o.pageSegMode;
+      this.dpi = o.dpi;
+      this.textRecogniser = o.textRecogniser;
+      this.glyphSet = o.glyphSet;
     }
   }
 
@@ -102,20 +225,38 @@ public class OcrMatchingBy extends ImgRecogBy
         && Objects.equals(searchTerm, that.searchTerm)
         && Objects.equals(minScore, that.minScore)
         && Objects.equals(ocrTest, that.ocrTest)
+        && Objects.equals(maxEditDistance, that.maxEditDistance)
         && Objects.equals(nms, that.nms)
         && Objects.equals(iou, that.iou)
         && Objects.equals(padding, that.padding)
         && Arrays.equals(cleanUp, that.cleanUp)
-        && Arrays.equals(filters, that.filters);
+        && Arrays.equals(filters, that.filters)
+        && Arrays.deepEquals(filterVariants, that.filterVariants)
+        && Objects.equals(minInputPixels, that.minInputPixels)
+        && Objects.equals(maxInputPixels, that.maxInputPixels)
+        && Objects.equals(earlyStop, that.earlyStop)
+        && Objects.equals(minTextConfidence, that.minTextConfidence)
+        && Objects.equals(lengthTolerance, that.lengthTolerance)
+        && Arrays.equals(textDetectors, that.textDetectors)
+        && Objects.equals(language, that.language)
+        && Objects.equals(charWhitelist, that.charWhitelist)
+        && Objects.equals(pageSegMode, that.pageSegMode)
+        && Objects.equals(dpi, that.dpi)
+        && Objects.equals(textRecogniser, that.textRecogniser)
+        && Objects.equals(glyphSet, that.glyphSet);
   }
 
   @Override
   public int hashCode()
   {
     int result = Objects.hash(templateFilename, method, order, platform, searchTerm,
-        minScore, ocrTest, nms, iou, padding);
+        minScore, ocrTest, maxEditDistance, nms, iou, padding, minInputPixels, maxInputPixels,
+        earlyStop, minTextConfidence, lengthTolerance, language, charWhitelist, pageSegMode, dpi,
+        textRecogniser, glyphSet);
     result = 31 * result + Arrays.hashCode(cleanUp);
     result = 31 * result + Arrays.hashCode(filters);
+    result = 31 * result + Arrays.deepHashCode(filterVariants);
+    result = 31 * result + Arrays.hashCode(textDetectors);
     return result;
   }
 
@@ -156,6 +297,58 @@ public class OcrMatchingBy extends ImgRecogBy
     final Padding padding = oParams.getPadding();
     final String msg5 = String.format("'padding' should be non-null but was '%s'", padding);
     ImgRecogBy.verifyParam(padding, p -> nonNull(p), () -> new IllegalArgumentException(msg5));
+
+    final int minPixels = nonNull(oParams.getMinInputPixels())
+        ? oParams.getMinInputPixels()
+        : OcrMatching.MIN_INPUT_PIXELS;
+    final String msg6 = String.format("Expected minInputPixels > 0 but was '%d'", minPixels);
+    ImgRecogBy.verifyParam(minPixels, p -> p > 0, () -> new IllegalArgumentException(msg6));
+
+    final int maxPixels = nonNull(oParams.getMaxInputPixels())
+        ? oParams.getMaxInputPixels()
+        : OcrMatching.MAX_INPUT_PIXELS;
+    final String msg7 = String.format("Expected maxInputPixels >= minInputPixels (%d) but was "
+        + "'%d'", minPixels, maxPixels);
+    ImgRecogBy.verifyParam(maxPixels, p -> p >= minPixels,
+        () -> new IllegalArgumentException(msg7));
+
+    final Integer minTextConfidence = oParams.getMinTextConfidence();
+    final String msg8 = String.format("Expected 0 <= minTextConfidence <= 100 but was '%d'",
+        minTextConfidence);
+    ImgRecogBy.verifyParam(minTextConfidence, p -> isNull(p) || (p >= 0 && p <= 100),
+        () -> new IllegalArgumentException(msg8));
+
+    final Double lengthTolerance = oParams.getLengthTolerance();
+    final String msg9 = String.format("Expected lengthTolerance >= 0.0 but was '%.4f'",
+        lengthTolerance);
+    ImgRecogBy.verifyParam(lengthTolerance, p -> isNull(p) || p >= 0.0,
+        () -> new IllegalArgumentException(msg9));
+
+    final Integer pageSegMode = oParams.getPageSegMode();
+    final String msg10 = String.format("Expected %d <= pageSegMode <= %d but was '%d'",
+        OcrMatching.MIN_PAGE_SEGMENTATION_MODE, OcrMatching.MAX_PAGE_SEGMENTATION_MODE,
+        pageSegMode);
+    ImgRecogBy.verifyParam(pageSegMode, p -> isNull(p)
+            || (p >= OcrMatching.MIN_PAGE_SEGMENTATION_MODE
+            && p <= OcrMatching.MAX_PAGE_SEGMENTATION_MODE),
+        () -> new IllegalArgumentException(msg10));
+
+    final Integer dpi = oParams.getDpi();
+    final String msg11 = String.format("Expected dpi > 0 but was '%d'", dpi);
+    ImgRecogBy.verifyParam(dpi, p -> isNull(p) || p > 0,
+        () -> new IllegalArgumentException(msg11));
+
+    final String glyphSet = oParams.getGlyphSet();
+    final String msg12 = String.format("If 'textRecogniser'=GLYPHS, then 'glyphSet' should be "
+        + "neither null nor empty but was '%s'", glyphSet);
+    ImgRecogBy.verifyParam(glyphSet, p -> oParams.getTextRecogniser() != TextRecogniser.GLYPHS
+        || (nonNull(p) && !p.isEmpty()), () -> new IllegalArgumentException(msg12));
+
+    final Integer maxEditDistance = oParams.getMaxEditDistance();
+    final String msg13 = String.format("Expected maxEditDistance >= 0 but was '%d'",
+        maxEditDistance);
+    ImgRecogBy.verifyParam(maxEditDistance, p -> isNull(p) || p >= 0,
+        () -> new IllegalArgumentException(msg13));
   }
 
   public String getSearchTerm()
@@ -173,6 +366,11 @@ public class OcrMatchingBy extends ImgRecogBy
     return this.ocrTest;
   }
 
+  public Integer getMaxEditDistance()
+  {
+    return this.maxEditDistance;
+  }
+
   public Float getNms()
   {
     return this.nms;
@@ -198,13 +396,87 @@ public class OcrMatchingBy extends ImgRecogBy
     return this.filters;
   }
 
+  public ImageFilter[][] getFilterVariants()
+  {
+    return this.filterVariants;
+  }
+
+  public Integer getMinInputPixels()
+  {
+    return this.minInputPixels;
+  }
+
+  public Integer getMaxInputPixels()
+  {
+    return this.maxInputPixels;
+  }
+
+  public Boolean getEarlyStop()
+  {
+    return this.earlyStop;
+  }
+
+  public Integer getMinTextConfidence()
+  {
+    return this.minTextConfidence;
+  }
+
+  public Double getLengthTolerance()
+  {
+    return this.lengthTolerance;
+  }
+
+  public TextDetector[] getTextDetectors()
+  {
+    return this.textDetectors;
+  }
+
+  public String getLanguage()
+  {
+    return this.language;
+  }
+
+  public String getCharWhitelist()
+  {
+    return this.charWhitelist;
+  }
+
+  public Integer getPageSegMode()
+  {
+    return this.pageSegMode;
+  }
+
+  public Integer getDpi()
+  {
+    return this.dpi;
+  }
+
+  public TextRecogniser getTextRecogniser()
+  {
+    return this.textRecogniser;
+  }
+
+  public String getGlyphSet()
+  {
+    return this.glyphSet;
+  }
+
   @Override
   public String toString()
   {
     return "OcrMatchingBy(searchTerm=" + this.getSearchTerm() + ", minScore=" + this.getMinScore()
-        + ", ocrTest=" + this.getOcrTest() + ", nms=" + this.getNms() + ", iou=" + this.getIou()
+        + ", ocrTest=" + this.getOcrTest() + ", maxEditDistance=" + this.getMaxEditDistance()
+        + ", nms=" + this.getNms() + ", iou=" + this.getIou()
         + ", padding=" + this.getPadding() + ", filters=" + Arrays.deepToString(
-        this.getFilters()) + ")";
+        this.getFilters()) + ", filterVariants=" + Arrays.deepToString(this.getFilterVariants())
+        + ", minInputPixels=" + this.getMinInputPixels()
+        + ", maxInputPixels=" + this.getMaxInputPixels() + ", earlyStop=" + this.getEarlyStop()
+        + ", minTextConfidence=" + this.getMinTextConfidence() + ", lengthTolerance="
+        + this.getLengthTolerance() + ", textDetectors=" + Arrays.toString(
+        this.getTextDetectors()) + ", language=" + this.getLanguage() + ", charWhitelist="
+        + this.getCharWhitelist() + ", pageSegMode=" + this.getPageSegMode() + ", dpi="
+        + this.getDpi() + ", textRecogniser=" + this.getTextRecogniser() + ", glyphSet="
+        + this.getGlyphSet() + ")";
   }
 
   public static OcrMatchingByBuilder<OcrMatchingBy, OcrMatchingByBuilderImpl> builder()
@@ -250,6 +522,13 @@ public class OcrMatchingBy extends ImgRecogBy
       return self();
     }
 
+    /** See {@link OcrMatchingBy#maxEditDistance}. */
+    public B maxEditDistance(Integer maxEditDistance)
+    {
+      ((OcrMatchingBy) super.memo).maxEditDistance = maxEditDistance;
+      return self();
+    }
+
     /** See {@link OcrMatchingBy#nms}. */
     public B nms(Float nms)
     {
@@ -285,6 +564,97 @@ public class OcrMatchingBy extends ImgRecogBy
       return self();
     }
 
+    /** See {@link OcrMatchingBy#filterVariants}. */
+    public B filterVariants(ImageFilter[][] filterVariants)
+    {
+      ((OcrMatchingBy) super.memo).filterVariants = filterVariants;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#minInputPixels}. */
+    public B minInputPixels(Integer minInputPixels)
+    {
+      ((OcrMatchingBy) super.memo).minInputPixels = minInputPixels;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#maxInputPixels}. */
+    public B maxInputPixels(Integer maxInputPixels)
+    {
+      ((OcrMatchingBy) super.memo).maxInputPixels = maxInputPixels;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#earlyStop}. */
+    public B earlyStop(Boolean earlyStop)
+    {
+      ((OcrMatchingBy) super.memo).earlyStop = earlyStop;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#minTextConfidence}. */
+    public B minTextConfidence(Integer minTextConfidence)
+    {
+      ((OcrMatchingBy) super.memo).minTextConfidence = minTextConfidence;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#lengthTolerance}. */
+    public B lengthTolerance(Double lengthTolerance)
+    {
+      ((OcrMatchingBy) super.memo).lengthTolerance = lengthTolerance;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#textDetectors}. */
+    public B textDetectors(TextDetector[] textDetectors)
+    {
+      ((OcrMatchingBy) super.memo).textDetectors = textDetectors;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#language}. */
+    public B language(String language)
+    {
+      ((OcrMatchingBy) super.memo).language = language;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#charWhitelist}. */
+    public B charWhitelist(String charWhitelist)
+    {
+      ((OcrMatchingBy) super.memo).charWhitelist = charWhitelist;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#pageSegMode}. */
+    public B pageSegMode(Integer pageSegMode)
+    {
+      ((OcrMatchingBy) super.memo).pageSegMode = pageSegMode;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#dpi}. */
+    public B dpi(Integer dpi)
+    {
+      ((OcrMatchingBy) super.memo).dpi = dpi;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#textRecogniser}. */
+    public B textRecogniser(TextRecogniser textRecogniser)
+    {
+      ((OcrMatchingBy) super.memo).textRecogniser = textRecogniser;
+      return self();
+    }
+
+    /** See {@link OcrMatchingBy#glyphSet}. */
+    public B glyphSet(String glyphSet)
+    {
+      ((OcrMatchingBy) super.memo).glyphSet = glyphSet;
+      return self();
+    }
+
     protected abstract B self();
 
     public abstract C build();
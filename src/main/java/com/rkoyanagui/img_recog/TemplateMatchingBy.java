@@ -55,6 +55,15 @@ public class TemplateMatchingBy extends ImgRecogBy
   protected ImageFilter[] preResizingFilters;
   /** See {@link #preResizingFilters}. */
   protected ImageFilter[] postResizingFilters;
+  /**
+   * Alternative chains of filters to be applied to the images before resizing them, each in place
+   * of {@link #preResizingFilters}, while {@link #postResizingFilters} stay the same. The locator
+   * is then tried with {@link #preResizingFilters} and with every variant at the same time, on the
+   * same screenshot, and the first of them to match wins, e.g., with and without {@link
+   * ImageFilter#NEGATIVE}. An element found remembers the chain that found it. Lookups cost more
+   * CPU, but fewer of them miss. If null or empty, then only {@link #preResizingFilters} is used.
+   */
+  protected ImageFilter[][] filterVariants;
 
   /**
    * No-args constructor
@@ -78,6 +87,7 @@ public class TemplateMatchingBy extends ImgRecogBy
       this.resizeMaxAttempts = o.resizeMaxAttempts;
       this.preResizingFilters = o.preResizingFilters;
       this.postResizingFilters = o.postResizingFilters;
+      this.filterVariants = o.filterVariants;
     }
   }
 
@@ -95,7 +105,8 @@ public class TemplateMatchingBy extends ImgRecogBy
         && Objects.equals(resizeFactor, that.resizeFactor)
         && Objects.equals(resizeMaxAttempts, that.resizeMaxAttempts)
         && Arrays.equals(preResizingFilters, that.preResizingFilters)
-        && Arrays.equals(postResizingFilters, that.postResizingFilters);
+        && Arrays.equals(postResizingFilters, that.postResizingFilters)
+        && Arrays.deepEquals(filterVariants, that.filterVariants);
   }
 
   @Override
@@ -105,6 +116,7 @@ public class TemplateMatchingBy extends ImgRecogBy
         resizeFactor, resizeMaxAttempts);
     result = 31 * result + Arrays.hashCode(preResizingFilters);
     result = 31 * result + Arrays.hashCode(postResizingFilters);
+    result = 31 * result + Arrays.deepHashCode(filterVariants);
     return result;
   }
 
@@ -164,6 +176,11 @@ public class TemplateMatchingBy extends ImgRecogBy
     return this.postResizingFilters;
   }
 
+  public ImageFilter[][] getFilterVariants()
+  {
+    return this.filterVariants;
+  }
+
   @Override
   public String toString()
   {
@@ -171,7 +188,7 @@ public class TemplateMatchingBy extends ImgRecogBy
         + this.getResizeFactor() + ", resizeMaxAttempts=" + this.getResizeMaxAttempts()
         + ", preResizingFilters=" + Arrays.deepToString(this.getPreResizingFilters())
         + ", postResizingFilters=" + Arrays.deepToString(this.getPostResizingFilters())
-        + ")";
+        + ", filterVariants=" + Arrays.deepToString(this.getFilterVariants()) + ")";
   }
 
   public static TemplateMatchingByBuilder<TemplateMatchingBy, TemplateMatchingByBuilderImpl> builder()
@@ -231,6 +248,13 @@ public class TemplateMatchingBy extends ImgRecogBy
       return self();
     }
 
+    /** See {@link TemplateMatchingBy#filterVariants}. */
+    public B filterVariants(ImageFilter[][] filterVariants)
+    {
+      ((TemplateMatchingBy) super.memo).filterVariants = filterVariants;
+      return self();
+    }
+
     protected abstract B self();
 
     public abstract C build();
@@ -47,6 +47,9 @@ public @interface iOSImageTemplateFindBy
   /** See {@link TemplateMatchingBy#postResizingFilters}. */
   ImageFilter[] postResizingFilters() default {MORPH_DILATE};
 
+  /** See {@link TemplateMatchingBy#filterVariants}. */
+  Filters[] filterVariants() default {};
+
   /** An array in the order {@code x, y, width, height}. See {@link ImgRecogBy#offset}. */
   float[] offset() default {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
 
@@ -90,6 +93,7 @@ public @interface iOSImageTemplateFindBy
           .resizeMaxAttempts(ann.resizeMaxAttempts())
           .preResizingFilters(ann.preResizingFilters())
           .postResizingFilters(ann.postResizingFilters())
+          .filterVariants(ImgRecogBy.toFilterChains(ann.filterVariants()))
           .build();
     }
 
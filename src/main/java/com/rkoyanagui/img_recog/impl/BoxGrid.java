@@ -0,0 +1,180 @@
+package com.rkoyanagui.img_recog.impl;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid laid over a set of upright boxes, to find which boxes may overlap a given one
+ * without comparing it against every other box. Each box is registered in every cell it covers,
+ * and a query only looks into the cells the queried box covers. Boxes are identified by an index
+ * of the caller's choosing. Entries are kept in primitive arrays, as linked lists per cell. Entries
+ * of removed boxes are unlinked by the queries that come across them.
+ */
+class BoxGrid
+{
+
+  /** Upper bound on the number of cells, in case boxes are tiny compared to their extent. */
+  protected static final int MAX_CELLS = 1 << 16;
+
+  protected final float minX;
+  protected final float minY;
+  protected final float cellSize;
+  protected final int cols;
+  protected final int rows;
+  /** First entry of each cell, or -1. */
+  protected final int[] head;
+  /** Next entry in the same cell, or -1. */
+  protected int[] next;
+  /** The box each entry refers to. */
+  protected int[] boxOf;
+  protected int numOfEntries;
+  /** The last query each box was found by, so that boxes covering several cells are found once. */
+  protected int[] lastQuery;
+  protected int query;
+  /** Boxes no longer to be found by queries. */
+  protected boolean[] removed;
+  /** The boxes found by the last query. Only the first elements, as many as returned, matter. */
+  protected int[] found;
+
+  /**
+   * @param minX     the left side of the area covered by the grid
+   * @param minY     the top side of the area covered by the grid
+   * @param maxX     the right side of the area covered by the grid
+   * @param maxY     the bottom side of the area covered by the grid
+   * @param cellSize the desired side of each cell, ideally about the size of a typical box. It is
+   *                 enlarged if the grid would have more than {@link #MAX_CELLS} cells.
+   */
+  protected BoxGrid(final float minX,
+                    final float minY,
+                    final float maxX,
+                    final float maxY,
+                    final float cellSize)
+  {
+    final float extentX = Math.max(1.0f, maxX - minX);
+    final float extentY = Math.max(1.0f, maxY - minY);
+    float side = Math.max(1.0f, cellSize);
+    if ((extentX / side) * (extentY / side) > MAX_CELLS)
+    {
+      side = (float) Math.sqrt(extentX * extentY / MAX_CELLS);
+    }
+    this.minX = minX;
+    this.minY = minY;
+    this.cellSize = side;
+    this.cols = Math.max(1, (int) Math.ceil(extentX / side));
+    this.rows = Math.max(1, (int) Math.ceil(extentY / side));
+    this.head = new int[cols * rows];
+    Arrays.fill(this.head, -1);
+    this.next = new int[64];
+    this.boxOf = new int[64];
+    this.lastQuery = new int[64];
+    this.removed = new boolean[64];
+    this.found = new int[16];
+  }
+
+  /**
+   * Registers a box in every cell it covers. Boxes reaching beyond the grid are registered in the
+   * cells along its border.
+   */
+  protected void insert(final int box,
+                        final float left,
+                        final float top,
+                        final float right,
+                        final float bottom)
+  {
+    if (box >= lastQuery.length)
+    {
+      final int capacity = Math.max(box + 1, 2 * lastQuery.length);
+      lastQuery = Arrays.copyOf(lastQuery, capacity);
+      removed = Arrays.copyOf(removed, capacity);
+    }
+    final int col0 = col(left);
+    final int col1 = col(right);
+    final int row0 = row(top);
+    final int row1 = row(bottom);
+    for (int r = row0; r <= row1; r++)
+    {
+      for (int c = col0; c <= col1; c++)
+      {
+        if (numOfEntries == next.length)
+        {
+          next = Arrays.copyOf(next, 2 * numOfEntries);
+          boxOf = Arrays.copyOf(boxOf, 2 * numOfEntries);
+        }
+        final int cell = r * cols + c;
+        next[numOfEntries] = head[cell];
+        boxOf[numOfEntries] = box;
+        head[cell] = numOfEntries;
+        numOfEntries++;
+      }
+    }
+  }
+
+  /**
+   * Makes a box no longer be found by queries.
+   */
+  protected void remove(final int box)
+  {
+    removed[box] = true;
+  }
+
+  /**
+   * Finds the boxes registered in any of the cells a given box covers. These are all the boxes
+   * that may overlap it, and possibly a few more that do not.
+   *
+   * @return how many boxes were found. The boxes themselves are in {@link #found}.
+   */
+  protected int query(final float left, final float top, final float right, final float bottom)
+  {
+    query++;
+    int numOfFound = 0;
+    final int col0 = col(left);
+    final int col1 = col(right);
+    final int row0 = row(top);
+    final int row1 = row(bottom);
+    for (int r = row0; r <= row1; r++)
+    {
+      for (int c = col0; c <= col1; c++)
+      {
+        final int cell = r * cols + c;
+        int previous = -1;
+        for (int e = head[cell]; e >= 0; e = next[e])
+        {
+          final int box = boxOf[e];
+          if (removed[box])
+          {
+            if (previous < 0)
+            {
+              head[cell] = next[e];
+            }
+            else
+            {
+              next[previous] = next[e];
+            }
+            continue;
+          }
+          previous = e;
+          if (lastQuery[box] != query)
+          {
+            lastQuery[box] = query;
+            if (numOfFound == found.length)
+            {
+              found = Arrays.copyOf(found, 2 * numOfFound);
+            }
+            found[numOfFound++] = box;
+          }
+        }
+      }
+    }
+    return numOfFound;
+  }
+
+  protected int col(final float x)
+  {
+    return Math.max(0, Math.min(cols - 1, (int) Math.floor((x - minX) / cellSize)));
+  }
+
+  protected int row(final float y)
+  {
+    return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+  }
+
+}
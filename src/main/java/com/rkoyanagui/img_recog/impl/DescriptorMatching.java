@@ -0,0 +1,26 @@
+package com.rkoyanagui.img_recog.impl;
+
+/**
+ * How to pair up the feature descriptors of the query image with those of the training image, in
+ * the <i>feature matching</i> method.
+ */
+public enum DescriptorMatching
+{
+
+  /**
+   * Compares every query descriptor against every training descriptor, by Hamming distance, and
+   * keeps only the pairs that are each other's best match in both directions (cross-check). Exact,
+   * but its cost grows with the product of both numbers of features, and the cross-check takes a
+   * second full matching pass.
+   */
+  BRUTE_FORCE,
+  /**
+   * Indexes the training descriptors with FLANN's <i>locality-sensitive hashing</i> (LSH), which is
+   * suited to binary descriptors such as ORB's, and finds the two nearest neighbours of every query
+   * descriptor. A match is kept only if its distance is clearly shorter than that of the second
+   * nearest neighbour (Lowe's ratio test). Approximate, but scales better when a large number of
+   * training features is requested.
+   */
+  FLANN_LSH
+
+}
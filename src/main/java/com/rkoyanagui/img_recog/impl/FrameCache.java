@@ -0,0 +1,160 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.opencv.imgcodecs.Imgcodecs.IMREAD_UNCHANGED;
+import static org.opencv.imgcodecs.Imgcodecs.imdecode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+
+/**
+ * Remembers the last screenshot that was decoded, and the intermediate results that locators have
+ * computed from it (keypoints, descriptors, recognised words and the like), so that other locators
+ * looking at the same screenshot can reuse them instead of computing them all over again.
+ * <p/>Results are keyed by the region of the screenshot they were computed from (the whole of it,
+ * or a cutout) plus whatever parameters they depend on. As soon as a different screenshot is
+ * decoded, every result is forgotten. A region is identified by the address of its pixel data, so
+ * each entry keeps a reference to its region, to prevent that memory from being released and
+ * reused while the entry lives.
+ */
+public class FrameCache
+{
+
+  /** Upper bound on the number of results kept for a single screenshot. */
+  protected static final int DEFAULT_CAPACITY = 64;
+
+  protected final Map<List<Object>, Entry> entries;
+  protected byte[] lastEncodedFrame;
+  protected Mat lastFrame;
+
+  public FrameCache()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public FrameCache(final int capacity)
+  {
+    this.entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = -3461265470281742164L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<List<Object>, Entry> eldest)
+      {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Decodes an encoded image (PNG, JPEG...). If it is the same as the last image decoded, then the
+   * same {@link Mat} is returned again. Otherwise, all cached results are discarded.
+   *
+   * @param encodedFrame the encoded image, e.g., a screenshot
+   * @return the decoded image, if it was not empty
+   */
+  public synchronized Optional<Mat> decode(final byte[] encodedFrame)
+  {
+    if (nonNull(lastFrame)
+        && (encodedFrame == lastEncodedFrame || Arrays.equals(encodedFrame, lastEncodedFrame)))
+    {
+      return Optional.of(lastFrame);
+    }
+    final Optional<Mat> frame = OpenCvImgUtils.maybeNotEmpty(new MatOfByte(encodedFrame))
+        .map(matOfByte -> imdecode(matOfByte, IMREAD_UNCHANGED));
+    entries.clear();
+    lastEncodedFrame = frame.isPresent() ? encodedFrame : null;
+    lastFrame = frame.orElse(null);
+    return frame;
+  }
+
+  /**
+   * Returns the cached result computed from a given region, with the given parameters, or else
+   * computes it and caches it. The computation happens outside of any lock, so two threads asking
+   * for the same missing result at once may both compute it; only the first one is kept.
+   *
+   * @param region   the image, or part of an image, the result was computed from
+   * @param params   everything else the result depends on. Arrays are compared by content.
+   * @param supplier computes the result when it is not cached
+   * @param <V>      the type of the result
+   * @return the cached or the newly computed result
+   */
+  @SuppressWarnings("unchecked")
+  public <V> V computeIfAbsent(final Mat region,
+                               final List<?> params,
+                               final Supplier<V> supplier)
+  {
+    final List<Object> key = key(region, params);
+    synchronized (this)
+    {
+      final Entry entry = entries.get(key);
+      if (nonNull(entry))
+      {
+        return (V) entry.value;
+      }
+    }
+    final V value = supplier.get();
+    synchronized (this)
+    {
+      final Entry entry = entries.putIfAbsent(key, new Entry(region, value));
+      return isNull(entry) ? value : (V) entry.value;
+    }
+  }
+
+  /**
+   * @param region the image, or part of an image, the result was computed from
+   * @param params everything else the result depends on. Arrays are compared by content.
+   * @return whether a result computed from the given region, with the given parameters, is cached
+   */
+  public synchronized boolean contains(final Mat region, final List<?> params)
+  {
+    return entries.containsKey(key(region, params));
+  }
+
+  /** Discards every cached result, as well as the last decoded image. */
+  public synchronized void clear()
+  {
+    entries.clear();
+    lastEncodedFrame = null;
+    lastFrame = null;
+  }
+
+  protected static List<Object> key(final Mat region, final List<?> params)
+  {
+    final List<Object> key = new ArrayList<>(params.size() + 5);
+    key.add(region.dataAddr());
+    key.add(region.rows());
+    key.add(region.cols());
+    key.add(region.step1());
+    key.add(region.type());
+    for (final Object param : params)
+    {
+      key.add(param instanceof Object[] ? Arrays.asList((Object[]) param) : param);
+    }
+    return key;
+  }
+
+  protected static class Entry
+  {
+
+    /** Only held to keep the region's pixel data, whose address is part of the key, alive. */
+    protected final Mat region;
+    protected final Object value;
+
+    protected Entry(final Mat region, final Object value)
+    {
+      this.region = region;
+      this.value = value;
+    }
+
+  }
+
+}
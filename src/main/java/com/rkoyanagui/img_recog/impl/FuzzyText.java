@@ -0,0 +1,213 @@
+package com.rkoyanagui.img_recog.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Tells whether some text is, or contains, a search term within a number of edit (Levenshtein)
+ * distance, i.e., of characters inserted, deleted or substituted, so that a word Tesseract misread
+ * by a character or two still passes {@link OcrTest#FUZZY_EQUALS} or {@link
+ * OcrTest#FUZZY_CONTAINS}.
+ * <p/>Before being compared, both texts are lower-cased and the characters OCR most often confuses
+ * are mapped onto the same one, e.g., <i>O</i> onto <i>0</i>, and <i>l</i>, <i>I</i> and <i>|</i>
+ * onto <i>1</i>, so that such misreadings cost nothing at all. The distance is then computed with
+ * Myers' bit-parallel algorithm, which handles up to 64 characters of the search term per machine
+ * word, in a single pass over the text. Longer search terms fall back on the textbook dynamic
+ * programming algorithm.
+ * <p/>A matcher is compiled once per search term, and may be used by any number of threads.
+ */
+class FuzzyText
+{
+
+  /**
+   * Pairs of characters OCR confuses, each mapped onto the second, after lower-casing. Only the
+   * pairs most often confused are listed, as any pair listed makes words differing only in it
+   * equal, e.g., {@code b8} would make <i>bag</i> and <i>8ag</i> the same word.
+   */
+  protected static final String CONFUSABLES = "o0" + "l1" + "i1" + "|1" + "s5" + "z2";
+  protected static final char[] CANONICAL = canonicalTable();
+
+  /** The search term, normalised. */
+  protected final String pattern;
+  /** The maximum edit distance. */
+  protected final int maxDistance;
+  /**
+   * For each character, the bit mask of its positions in the pattern, see Myers' {@code Peq}, for
+   * patterns of up to 64 characters. ASCII characters are looked up by their code.
+   */
+  protected final long[] asciiMasks;
+  protected final Map<Character, Long> otherMasks;
+
+  protected FuzzyText(final String searchTerm, final int maxDistance)
+  {
+    this.pattern = normalise(searchTerm);
+    this.maxDistance = maxDistance;
+    this.asciiMasks = new long[128];
+    this.otherMasks = new HashMap<>(0);
+    if (pattern.length() <= Long.SIZE)
+    {
+      for (int i = 0; i < pattern.length(); i++)
+      {
+        final char c = pattern.charAt(i);
+        if (c < asciiMasks.length)
+        {
+          asciiMasks[c] |= 1L << i;
+        }
+        else
+        {
+          otherMasks.merge(c, 1L << i, (a, b) -> a | b);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return a predicate telling whether a text, trimmed, is the search term within the given edit
+   * distance
+   */
+  protected static Predicate<String> equalsWithin(final String searchTerm, final int maxDistance)
+  {
+    final FuzzyText fuzzy = new FuzzyText(searchTerm, maxDistance);
+    return s -> fuzzy.distance(normalise(s.trim()), false) <= maxDistance;
+  }
+
+  /**
+   * @return a predicate telling whether a text contains the search term within the given edit
+   * distance
+   */
+  protected static Predicate<String> containsWithin(final String searchTerm, final int maxDistance)
+  {
+    final FuzzyText fuzzy = new FuzzyText(searchTerm, maxDistance);
+    return s -> fuzzy.distance(normalise(s), true) <= maxDistance;
+  }
+
+  /**
+   * @return the text lower-cased, with each confusable character replaced by its canonical one
+   */
+  protected static String normalise(final String text)
+  {
+    final char[] chars = text.toLowerCase().toCharArray();
+    for (int i = 0; i < chars.length; i++)
+    {
+      if (chars[i] < CANONICAL.length)
+      {
+        chars[i] = CANONICAL[chars[i]];
+      }
+    }
+    return new String(chars);
+  }
+
+  /**
+   * @param text      the normalised text
+   * @param substring whether to find the pattern anywhere in the text, rather than the whole text
+   * @return the edit distance between the pattern and the text, or the least edit distance between
+   * the pattern and any substring of the text, or some number greater than {@link #maxDistance},
+   * if it is clear that the distance is greater than that
+   */
+  protected int distance(final String text, final boolean substring)
+  {
+    final int m = pattern.length();
+    if (!substring && Math.abs(text.length() - m) > maxDistance)
+    {
+      return maxDistance + 1;
+    }
+    if (m == 0)
+    {
+      return substring ? 0 : text.length();
+    }
+    return m <= Long.SIZE ? myers(text, substring) : dynamicProgramming(text, substring);
+  }
+
+  /**
+   * Myers' bit-parallel edit distance, in Hyyrö's formulation. Each bit {@code i} of {@code pv}
+   * and {@code mv} tells whether the cell of row {@code i} of the current column of the dynamic
+   * programming matrix is one more, or one less, than the cell above it.
+   */
+  protected int myers(final String text, final boolean substring)
+  {
+    final int m = pattern.length();
+    final long last = 1L << (m - 1);
+    long pv = -1L;
+    long mv = 0L;
+    int score = m;
+    int best = m;
+    for (int j = 0; j < text.length(); j++)
+    {
+      final long eq = mask(text.charAt(j));
+      final long xv = eq | mv;
+      final long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0)
+      {
+        score++;
+      }
+      else if ((mh & last) != 0)
+      {
+        score--;
+      }
+      // Matching the whole text, the top row costs one per character of the text skipped.
+      ph = substring ? ph << 1 : (ph << 1) | 1L;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+      if (substring)
+      {
+        best = Math.min(best, score);
+        if (best == 0)
+        {
+          return 0;
+        }
+      }
+    }
+    return substring ? best : score;
+  }
+
+  protected int dynamicProgramming(final String text, final boolean substring)
+  {
+    final int m = pattern.length();
+    int[] previous = new int[m + 1];
+    int[] current = new int[m + 1];
+    for (int i = 0; i <= m; i++)
+    {
+      previous[i] = i;
+    }
+    int best = m;
+    for (int j = 1; j <= text.length(); j++)
+    {
+      current[0] = substring ? 0 : j;
+      final char c = text.charAt(j - 1);
+      for (int i = 1; i <= m; i++)
+      {
+        final int substitution = previous[i - 1] + (pattern.charAt(i - 1) == c ? 0 : 1);
+        current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+      }
+      best = Math.min(best, current[m]);
+      final int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return substring ? best : previous[m];
+  }
+
+  protected long mask(final char c)
+  {
+    return c < asciiMasks.length ? asciiMasks[c] : otherMasks.getOrDefault(c, 0L);
+  }
+
+  protected static char[] canonicalTable()
+  {
+    final char[] table = new char[128];
+    for (char c = 0; c < table.length; c++)
+    {
+      table[c] = c;
+    }
+    for (int i = 0; i < CONFUSABLES.length(); i += 2)
+    {
+      table[CONFUSABLES.charAt(i)] = CONFUSABLES.charAt(i + 1);
+    }
+    return table;
+  }
+
+}
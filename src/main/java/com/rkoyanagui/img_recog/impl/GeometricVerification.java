@@ -0,0 +1,50 @@
+package com.rkoyanagui.img_recog.impl;
+
+/**
+ * How to check, in the <i>feature matching</i> method, that the matched keypoints agree on where
+ * the query image lies in the training image. Each model estimates a transformation from the query
+ * image's plane to the training image's, keeping only the matches consistent with it (the
+ * inliers). Models with fewer degrees of freedom need fewer matches to be estimated, converge in
+ * fewer iterations, and are less prone to fit spurious matches, but cannot describe as many
+ * distortions.
+ */
+public enum GeometricVerification
+{
+
+  /**
+   * A perspective transformation (8 degrees of freedom), estimated with classic RANSAC. Describes
+   * any rotation, scaling, skewing or perspective distortion of a flat image.
+   */
+  HOMOGRAPHY(4),
+  /**
+   * The same model as {@link #HOMOGRAPHY}, estimated with OpenCV's USAC framework in its fast
+   * configuration (local optimisation and degeneracy checks), which usually needs far fewer
+   * iterations than classic RANSAC.
+   */
+  HOMOGRAPHY_USAC(4),
+  /**
+   * The same model as {@link #HOMOGRAPHY}, estimated with PROSAC, which draws its samples from the
+   * best matches first. Matches are already sorted by descriptor distance, so a good estimate is
+   * often found within the first few iterations.
+   */
+  HOMOGRAPHY_PROSAC(4),
+  /**
+   * An affine transformation (6 degrees of freedom): rotation, scaling along each axis, shearing
+   * and translation, but no perspective.
+   */
+  AFFINE(3),
+  /**
+   * A similarity, or partial affine, transformation (4 degrees of freedom): rotation, uniform
+   * scaling and translation. Describes how UI elements usually differ between screens.
+   */
+  SIMILARITY(2);
+
+  /** The smallest number of matches the model can be estimated from. */
+  public final int minimalSampleSize;
+
+  GeometricVerification(final int minimalSampleSize)
+  {
+    this.minimalSampleSize = minimalSampleSize;
+  }
+
+}
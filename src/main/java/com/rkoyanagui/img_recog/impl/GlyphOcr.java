@@ -0,0 +1,223 @@
+package com.rkoyanagui.img_recog.impl;
+
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Range;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Recognises text rendered in a known font by splitting each text box into characters, and telling
+ * which character each one is by its correlation with the glyphs in a {@link GlyphSet}. Far cheaper
+ * than Tesseract, but only for the characters, and the font, the glyph set was captured from.
+ * <p/>A box is binarised with Otsu's method, taking the minority of pixels as the text, so that
+ * light text on a dark background is read as well as dark text on a light one. Its connected
+ * components are characters, except that components overlapping horizontally, like the dot and the
+ * stem of an <i>i</i>, make up a single character. Each character is then cut out tight, and
+ * normalised into a square {@link GlyphSet#SIZE} pixels high, keeping its aspect ratio, so that the
+ * same character reads the same whatever else is in the line.
+ */
+class GlyphOcr
+{
+
+  /** Components smaller than this, in pixels, are deemed noise. */
+  protected static final int MIN_AREA = 3;
+  /** Gaps between characters wider than this fraction of their median height are spaces. */
+  protected static final double SPACE_FACTOR = 0.5;
+
+  protected GlyphOcr()
+  {
+  }
+
+  /**
+   * Recognises the text inside each of several areas of the same image.
+   *
+   * @param img        the image to be OCR'ed
+   * @param rectangles the areas of the image to be OCR'ed
+   * @param glyphs     the glyphs of the font the text is rendered in
+   * @return for each area, in the same order, the text recognised and the mean correlation of its
+   * characters with their glyphs, from 0 to 100
+   */
+  protected static List<Pair<String, Integer>> recognise(final Mat img,
+                                                         final List<Rectangle> rectangles,
+                                                         final GlyphSet glyphs)
+  {
+    final Mat gray = TextProposals.gray(img);
+    final Rect bounds = new Rect(0, 0, gray.cols(), gray.rows());
+    final List<Pair<String, Integer>> results = new ArrayList<>(rectangles.size());
+    for (final Rectangle rectangle : rectangles)
+    {
+      final Rect area = intersection(bounds, rectangle);
+      if (area.empty())
+      {
+        results.add(new Pair<>("", 0));
+        continue;
+      }
+      results.add(recognise(segment(gray.submat(area)), glyphs));
+    }
+    return results;
+  }
+
+  protected static Pair<String, Integer> recognise(final List<Segment> segments,
+                                                   final GlyphSet glyphs)
+  {
+    final StringBuilder text = new StringBuilder(2 * segments.size());
+    double sumOfCorrelations = 0.0;
+    for (int i = 0; i < segments.size(); i++)
+    {
+      final Segment segment = segments.get(i);
+      if (i > 0 && segment.isAfterSpace(segments.get(i - 1)))
+      {
+        text.append(' ');
+      }
+      final Pair<String, Float> glyph = glyphs.classify(segment.canvas);
+      text.append(glyph.a);
+      sumOfCorrelations += Math.max(0.0f, glyph.b);
+    }
+    final int confidence = segments.isEmpty()
+        ? 0
+        : (int) Math.round(100.0 * sumOfCorrelations / segments.size());
+    return new Pair<>(text.toString(), confidence);
+  }
+
+  /**
+   * Splits a single line of text into characters.
+   *
+   * @param gray the line of text, in shades of grey
+   * @return the characters, from left to right, each normalised for {@link GlyphSet#classify}
+   */
+  protected static List<Segment> segment(final Mat gray)
+  {
+    final Mat bin = new Mat();
+    Imgproc.threshold(gray, bin, 0, 255, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+    if (2 * Core.countNonZero(bin) > bin.total())
+    {
+      Core.bitwise_not(bin, bin);
+    }
+
+    final Mat labels = new Mat();
+    final Mat stats = new Mat();
+    final Mat centroids = new Mat();
+    final int n = Imgproc.connectedComponentsWithStats(bin, labels, stats, centroids);
+    final int[] stat = new int[Imgproc.CC_STAT_MAX];
+    // Each column is a character's first and past-the-last columns, and its top and bottom rows.
+    final List<int[]> columns = new ArrayList<>(n);
+    // Label 0 is the background.
+    for (int label = 1; label < n; label++)
+    {
+      stats.get(label, 0, stat);
+      if (stat[Imgproc.CC_STAT_AREA] < MIN_AREA)
+      {
+        continue;
+      }
+      final int left = stat[Imgproc.CC_STAT_LEFT];
+      final int top = stat[Imgproc.CC_STAT_TOP];
+      columns.add(new int[]{left, left + stat[Imgproc.CC_STAT_WIDTH], top,
+          top + stat[Imgproc.CC_STAT_HEIGHT]});
+    }
+    if (columns.isEmpty())
+    {
+      return new ArrayList<>(0);
+    }
+
+    // Components overlapping horizontally make up a single character.
+    columns.sort(Comparator.comparingInt(c -> c[0]));
+    final List<int[]> merged = new ArrayList<>(columns.size());
+    int[] current = columns.get(0).clone();
+    for (final int[] column : columns.subList(1, columns.size()))
+    {
+      if (column[0] < current[1])
+      {
+        current[1] = Math.max(current[1], column[1]);
+        current[2] = Math.min(current[2], column[2]);
+        current[3] = Math.max(current[3], column[3]);
+      }
+      else
+      {
+        merged.add(current);
+        current = column.clone();
+      }
+    }
+    merged.add(current);
+
+    final int charHeight = medianHeight(merged);
+    final List<Segment> segments = new ArrayList<>(merged.size());
+    for (final int[] column : merged)
+    {
+      final Mat character =
+          bin.submat(new Range(column[2], column[3]), new Range(column[0], column[1]));
+      segments.add(new Segment(column[0], column[1], charHeight, normalise(character)));
+    }
+    return segments;
+  }
+
+  protected static int medianHeight(final List<int[]> columns)
+  {
+    final int[] heights = columns.stream().mapToInt(c -> c[3] - c[2]).sorted().toArray();
+    return heights[heights.length / 2];
+  }
+
+  /**
+   * Scales a character to {@link GlyphSet#SIZE} pixels high, keeping its aspect ratio, and centres
+   * it in a square canvas. Characters wider than the canvas are squeezed into it.
+   */
+  protected static Mat normalise(final Mat character)
+  {
+    final int size = GlyphSet.SIZE;
+    final double scale = (double) size / character.rows();
+    final int width = Math.max(1, Math.min(size, (int) Math.round(character.cols() * scale)));
+    final Mat scaled = new Mat();
+    Imgproc.resize(character, scaled, new Size(width, size), 0, 0, Imgproc.INTER_AREA);
+    final Mat canvas = Mat.zeros(size, size, CvType.CV_8UC1);
+    final int left = (size - width) / 2;
+    scaled.copyTo(canvas.colRange(left, left + width));
+    return canvas;
+  }
+
+  protected static Rect intersection(final Rect bounds, final Rectangle rectangle)
+  {
+    final int x = Math.max(bounds.x, rectangle.x);
+    final int y = Math.max(bounds.y, rectangle.y);
+    final int right = Math.min(bounds.x + bounds.width, rectangle.x + rectangle.width);
+    final int bottom = Math.min(bounds.y + bounds.height, rectangle.y + rectangle.height);
+    return new Rect(x, y, Math.max(0, right - x), Math.max(0, bottom - y));
+  }
+
+  /**
+   * A single character of a line of text.
+   */
+  protected static class Segment
+  {
+
+    /** The character's first column, within the line. */
+    protected final int left;
+    /** The column just past the character's last, within the line. */
+    protected final int right;
+    /** The median height of the characters in the line. */
+    protected final int charHeight;
+    /** The character, normalised, see {@link #normalise(Mat)}. */
+    protected final Mat canvas;
+
+    protected Segment(final int left, final int right, final int charHeight, final Mat canvas)
+    {
+      this.left = left;
+      this.right = right;
+      this.charHeight = charHeight;
+      this.canvas = canvas;
+    }
+
+    protected boolean isAfterSpace(final Segment previous)
+    {
+      return left - previous.right > SPACE_FACTOR * charHeight;
+    }
+
+  }
+
+}
@@ -0,0 +1,175 @@
+package com.rkoyanagui.img_recog.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.rkoyanagui.utils.Pair;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * The glyphs of the characters of some font, as rendered by the app under test, to tell characters
+ * apart by, see {@link GlyphOcr}. A glyph set is a directory of PNG images, each holding a single
+ * glyph, normalised by {@link GlyphOcr#normalise(Mat)}, and named after the hexadecimal code point
+ * of its character, optionally followed by an underscore and a number, as in {@code 0034.png} and
+ * {@code 0034_1.png}, for two samples of the digit <i>4</i>. Such a directory is built by {@link
+ * GlyphSetBuilder}.
+ */
+class GlyphSet
+{
+
+  /** The height and width of a normalised glyph, in pixels. */
+  protected static final int SIZE = 32;
+  protected static final String EXTENSION = ".png";
+
+  /** The character of each glyph. */
+  protected final List<String> characters;
+  /** Each glyph's pixels, with zero mean and unit norm, so that a dot product is a correlation. */
+  protected final List<float[]> glyphs;
+
+  /**
+   * @param glyphs each character and a normalised glyph of it
+   */
+  protected GlyphSet(final List<Pair<String, Mat>> glyphs)
+  {
+    final ImmutableList.Builder<String> characters = ImmutableList.builder();
+    final ImmutableList.Builder<float[]> vectors = ImmutableList.builder();
+    for (final Pair<String, Mat> glyph : glyphs)
+    {
+      final float[] vector = toVector(glyph.b);
+      if (vector.length > 0)
+      {
+        characters.add(glyph.a);
+        vectors.add(vector);
+      }
+    }
+    this.characters = characters.build();
+    this.glyphs = vectors.build();
+  }
+
+  /**
+   * Reads a glyph set from a directory.
+   *
+   * @param path the directory
+   * @return the glyph set
+   * @throws IllegalArgumentException if there is no such directory, or it holds no glyphs
+   */
+  protected static GlyphSet load(final String path)
+  {
+    final File[] files = new File(path).listFiles((dir, name) -> name.endsWith(EXTENSION));
+    if (files == null || files.length == 0)
+    {
+      throw new IllegalArgumentException("Could not find any glyphs in directory: " + path);
+    }
+    final List<Pair<String, Mat>> glyphs = new ArrayList<>(files.length);
+    for (final File file : files)
+    {
+      final Mat glyph = ReaderUtils.readGray(file.getPath());
+      if (glyph.rows() != SIZE || glyph.cols() != SIZE)
+      {
+        Imgproc.resize(glyph, glyph, new Size(SIZE, SIZE), 0, 0, Imgproc.INTER_AREA);
+      }
+      glyphs.add(new Pair<>(character(file.getName()), glyph));
+    }
+    return new GlyphSet(glyphs);
+  }
+
+  /**
+   * @return the character a glyph's file is named after
+   */
+  protected static String character(final String fileName)
+  {
+    final String name = fileName.substring(0, fileName.length() - EXTENSION.length());
+    final int end = name.indexOf('_');
+    final int codePoint = Integer.parseInt(end < 0 ? name : name.substring(0, end), 16);
+    return new String(Character.toChars(codePoint));
+  }
+
+  /**
+   * @return the name of the file of the given sample of a character's glyph
+   */
+  protected static String fileName(final String character, final int sample)
+  {
+    final String codePoint = String.format("%04x", character.codePointAt(0));
+    return (sample == 0 ? codePoint : codePoint + "_" + sample) + EXTENSION;
+  }
+
+  /**
+   * @return the number of glyphs
+   */
+  protected int size()
+  {
+    return glyphs.size();
+  }
+
+  /**
+   * Tells which character a normalised glyph is.
+   *
+   * @param canvas a glyph, normalised by {@link GlyphOcr#normalise(Mat)}
+   * @return the character whose glyph correlates best with it, and their correlation, from -1 to 1,
+   * or an empty string and 0, if the glyph is blank, or there are no glyphs to compare it with
+   */
+  protected Pair<String, Float> classify(final Mat canvas)
+  {
+    final float[] vector = toVector(canvas);
+    if (vector.length == 0 || glyphs.isEmpty())
+    {
+      return new Pair<>("", 0.0f);
+    }
+    String best = "";
+    float bestCorrelation = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < glyphs.size(); i++)
+    {
+      final float[] glyph = glyphs.get(i);
+      float correlation = 0.0f;
+      for (int k = 0; k < glyph.length; k++)
+      {
+        correlation += glyph[k] * vector[k];
+      }
+      if (correlation > bestCorrelation)
+      {
+        bestCorrelation = correlation;
+        best = characters.get(i);
+      }
+    }
+    return new Pair<>(best, bestCorrelation);
+  }
+
+  /**
+   * @return the glyph's pixels, minus their mean, divided by their norm, or an empty array if the
+   * glyph is blank
+   */
+  protected static float[] toVector(final Mat glyph)
+  {
+    final Mat pixels = new Mat();
+    glyph.convertTo(pixels, CvType.CV_32F);
+    final float[] vector = new float[SIZE * SIZE];
+    pixels.reshape(1, 1).get(0, 0, vector);
+    double mean = 0.0;
+    for (final float v : vector)
+    {
+      mean += v;
+    }
+    mean /= vector.length;
+    double norm = 0.0;
+    for (int k = 0; k < vector.length; k++)
+    {
+      vector[k] -= mean;
+      norm += vector[k] * vector[k];
+    }
+    if (norm == 0.0)
+    {
+      return new float[0];
+    }
+    final float scale = (float) (1.0 / Math.sqrt(norm));
+    for (int k = 0; k < vector.length; k++)
+    {
+      vector[k] *= scale;
+    }
+    return vector;
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.rkoyanagui.img_recog.impl;
+
+import com.rkoyanagui.img_recog.ImgUtils;
+import com.rkoyanagui.img_recog.impl.GlyphOcr.Segment;
+import com.rkoyanagui.utils.Pair;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds a {@link GlyphSet} from samples of text rendered by the app under test, for {@link
+ * TextRecogniser#GLYPHS} to read the same font with. Each sample is an image of a single line of
+ * text, cut out of a screenshot, together with the text it shows. The sample is split into
+ * characters the same way text boxes are when recognised, and each character is saved as a glyph
+ * of the corresponding character of the text, spaces aside. Samples split into a different number
+ * of characters, e.g., because two characters touch, are skipped. The more samples of each
+ * character, the better, e.g., a few screenshots of balances and counters covering all ten digits.
+ * <p/>Usage: {@code java -cp <classpath> com.rkoyanagui.img_recog.impl.GlyphSetBuilder <glyph set
+ * directory> <sample image> <text> [<sample image> <text> ...]}
+ */
+public class GlyphSetBuilder
+{
+
+  private static final Logger LOG = LoggerFactory.getLogger(GlyphSetBuilder.class);
+
+  protected GlyphSetBuilder()
+  {
+  }
+
+  public static void main(final String[] args)
+  {
+    if (args.length < 3 || args.length % 2 == 0)
+    {
+      throw new IllegalArgumentException("Expected a glyph set directory, followed by pairs of "
+          + "sample image and text, but got " + args.length + " argument(s)");
+    }
+    ImgUtils.initOpenCv();
+    final File dir = new File(args[0]);
+    if (!dir.isDirectory() && !dir.mkdirs())
+    {
+      throw new IllegalArgumentException("Could not create directory: " + dir);
+    }
+    int numOfGlyphs = 0;
+    for (int i = 1; i < args.length; i += 2)
+    {
+      final List<Pair<String, Mat>> glyphs = glyphs(ReaderUtils.read(args[i]), args[i + 1]);
+      if (glyphs.isEmpty())
+      {
+        LOG.warn("Skipped sample {}: it does not split into the characters of \"{}\"", args[i],
+            args[i + 1]);
+        continue;
+      }
+      save(dir, glyphs);
+      numOfGlyphs += glyphs.size();
+    }
+    LOG.info("Saved {} glyph(s) to {}", numOfGlyphs, dir);
+  }
+
+  /**
+   * Splits a sample of text into glyphs.
+   *
+   * @param sample an image of a single line of text
+   * @param text   the text the image shows
+   * @return each character of the text, spaces aside, and its normalised glyph, or nothing at all,
+   * if the image does not split into as many characters as the text has
+   */
+  public static List<Pair<String, Mat>> glyphs(final Mat sample, final String text)
+  {
+    final List<String> characters = new ArrayList<>(text.length());
+    text.codePoints()
+        .filter(c -> !Character.isWhitespace(c))
+        .forEach(c -> characters.add(new String(Character.toChars(c))));
+    final List<Segment> segments = GlyphOcr.segment(TextProposals.gray(sample));
+    if (segments.size() != characters.size())
+    {
+      return new ArrayList<>(0);
+    }
+    final List<Pair<String, Mat>> glyphs = new ArrayList<>(segments.size());
+    for (int i = 0; i < segments.size(); i++)
+    {
+      glyphs.add(new Pair<>(characters.get(i), segments.get(i).canvas));
+    }
+    return glyphs;
+  }
+
+  /**
+   * Saves glyphs into a glyph set's directory, alongside any glyphs already there.
+   */
+  protected static void save(final File dir, final List<Pair<String, Mat>> glyphs)
+  {
+    for (final Pair<String, Mat> glyph : glyphs)
+    {
+      int sample = 0;
+      File file = new File(dir, GlyphSet.fileName(glyph.a, sample));
+      while (file.exists())
+      {
+        file = new File(dir, GlyphSet.fileName(glyph.a, ++sample));
+      }
+      if (!Imgcodecs.imwrite(file.getPath(), glyph.b))
+      {
+        throw new IllegalArgumentException("Could not write glyph to file: " + file);
+      }
+    }
+  }
+
+}
@@ -37,6 +37,15 @@ public class ImgRecogConst
     public static final int SCORE_TYPE = ORB.HARRIS_SCORE;
     public static final int PATCH_SIZE = 31;
     public static final int FAST_THRESHOLD = 20;
+    public static final float RATIO_THRESHOLD = 0.75f;
+    public static final int LSH_TABLE_NUMBER = 6;
+    public static final int LSH_KEY_SIZE = 12;
+    public static final int LSH_MULTI_PROBE_LEVEL = 1;
+    public static final int FLANN_CHECKS = 32;
+    public static final double REPROJECTION_THRESHOLD = 5.0;
+    public static final int MAX_ITERS = 2000;
+    public static final double CONFIDENCE = 0.995;
+    public static final int DOWNSCALE_TARGET_SIDE = 1280;
 
     protected FeatureMatching()
     {
@@ -49,12 +58,23 @@ public class ImgRecogConst
 
     public static final float MIN_SCORE = 0.8f;
     public static final int PAGE_SEGMENTATION_MODE = 6;
+    public static final int SPARSE_TEXT_PAGE_SEGMENTATION_MODE = 11;
+    public static final int MIN_PAGE_SEGMENTATION_MODE = 3;
+    public static final int MAX_PAGE_SEGMENTATION_MODE = 13;
+    public static final int DPI = 70;
     public static final float NMS_THRESHOLD = 0.4f;
     public static final float IOU_THRESHOLD = 0.0001f;
     public static final double LEFT_PADDING = 0.03;
     public static final double RIGHT_PADDING = 0.0;
     public static final double TOP_PADDING = 0.0;
     public static final double BOTTOM_PADDING = 0.0;
+    public static final int MIN_INPUT_PIXELS = 160 * 160;
+    public static final int MAX_INPUT_PIXELS = 640 * 640;
+    public static final int MAX_TESSERACT_WORKERS = 4;
+    public static final int MIN_TEXT_CONFIDENCE = 80;
+    public static final double CHAR_ASPECT_RATIO = 0.5;
+    public static final double LENGTH_TOLERANCE = 1.0;
+    public static final int MAX_EDIT_DISTANCE = 1;
 
     protected OcrMatching()
     {
@@ -1,6 +1,5 @@
 package com.rkoyanagui.img_recog.impl;
 
-import static com.rkoyanagui.img_recog.impl.OpenCvImgUtils.toBufferedImage;
 import static com.rkoyanagui.utils.WaitUtils.await;
 import static java.time.Duration.ofSeconds;
 import static java.util.Objects.nonNull;
@@ -14,7 +13,6 @@ import io.appium.java_client.HasOnScreenKeyboard;
 import io.appium.java_client.TouchAction;
 import io.appium.java_client.touch.WaitOptions;
 import io.appium.java_client.touch.offset.PointOption;
-import java.awt.image.BufferedImage;
 import java.util.List;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.Keys;
@@ -154,8 +152,7 @@ public class ImgRecogMobileElement implements ImgRecogElement
         .maxNumOfAttempts(3)
         .until(() -> {
           final byte[] img = driver.getScreenshotAs(OutputType.BYTES);
-          final BufferedImage bi = toBufferedImage(img);
-          return imgRecogEngine.recognise(bi, rect)
+          return imgRecogEngine.recognise(img, rect)
               .map(s -> s.isEmpty())
               .orElse(false);
         })
@@ -167,8 +164,7 @@ public class ImgRecogMobileElement implements ImgRecogElement
   public boolean isTextEmpty()
   {
     final byte[] img = driver.getScreenshotAs(OutputType.BYTES);
-    final BufferedImage bi = toBufferedImage(img);
-    return imgRecogEngine.recognise(bi, rect)
+    return imgRecogEngine.recognise(img, rect)
         .map(s -> s.isEmpty())
         .orElse(false);
   }
@@ -0,0 +1,190 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The OCR models loaded in this JVM, shared by every {@link TesseractOcrMatcher}, so that creating
+ * one image recognition engine per driver session does not load the same trained data over and
+ * over again. Each model is loaded once per configuration, when first acquired, and released when
+ * the last matcher using it releases it.
+ * <p/>Tesseract handles are shared as a {@link TesseractPool}, which lends each handle to one
+ * caller at a time. An EAST network is shared as a single {@link Net}: OpenCV cannot back several
+ * networks with the same weights, so a network per thread would hold as many copies of them, and
+ * a forward pass already runs on several cores. Callers must not run the same network on several
+ * threads at once.
+ */
+class ModelRegistry
+{
+
+  private static final Logger LOG = LoggerFactory.getLogger(ModelRegistry.class);
+
+  protected static final Map<List<Object>, Entry> ENTRIES = new HashMap<>();
+  protected static final Map<Object, Entry> ENTRIES_BY_MODEL = new IdentityHashMap<>();
+
+  protected ModelRegistry()
+  {
+  }
+
+  /**
+   * Acquires the Tesseract handles for the given configuration, loading them if no one else holds
+   * them, or waiting for them to be loaded if some other thread is already doing it. Release them
+   * with {@link #release(Object)}.
+   *
+   * @param language the language of trained data
+   * @param datapath the path to the trained data file
+   * @param size     the number of Tesseract handles, and threads
+   * @return the shared Tesseract handles
+   */
+  protected static TesseractPool acquireTesseracts(final String language,
+                                                   final String datapath,
+                                                   final int size)
+  {
+    return acquire(Arrays.asList(TesseractPool.class, language, datapath, size),
+        () -> new TesseractPool(language, datapath, size),
+        TesseractPool::close);
+  }
+
+  /**
+   * Acquires the EAST network read from the given file, reading it if no one else holds it, or
+   * waiting for it to be read if some other thread is already doing it. Release it with {@link
+   * #release(Object)}.
+   *
+   * @param path the path to the frozen EAST graph
+   * @return the shared network
+   */
+  protected static Net acquireEast(final String path)
+  {
+    return acquire(Arrays.asList(Net.class, path),
+        () -> Dnn.readNetFromTensorflow(path),
+        net -> {
+          // Its native memory is freed once it is garbage collected.
+        });
+  }
+
+  /**
+   * Acquires the glyph set in the given directory, reading it if no one else holds it. Release it
+   * with {@link #release(Object)}.
+   *
+   * @param path the glyph set's directory
+   * @return the shared glyph set
+   */
+  protected static GlyphSet acquireGlyphSet(final String path)
+  {
+    return acquire(Arrays.asList(GlyphSet.class, path), () -> GlyphSet.load(path), glyphSet -> {
+      // Nothing but heap memory.
+    });
+  }
+
+  /**
+   * Releases a model acquired from this registry. Once every holder has released it, it is closed
+   * and forgotten, and the next holder loads it again.
+   *
+   * @param model the model
+   */
+  protected static void release(final Object model)
+  {
+    final Entry entry;
+    synchronized (ModelRegistry.class)
+    {
+      entry = ENTRIES_BY_MODEL.get(model);
+      if (isNull(entry) || --entry.holders > 0)
+      {
+        return;
+      }
+      ENTRIES.remove(entry.key);
+      ENTRIES_BY_MODEL.remove(model);
+    }
+    LOG.debug("Releasing {}", entry.key);
+    entry.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  protected static <T> T acquire(final List<Object> key,
+                                 final Supplier<T> loader,
+                                 final Consumer<T> closer)
+  {
+    final Entry entry;
+    synchronized (ModelRegistry.class)
+    {
+      entry = ENTRIES.computeIfAbsent(key,
+          k -> new Entry(k, (Supplier<Object>) loader, (Consumer<Object>) closer));
+      entry.holders++;
+    }
+    try
+    {
+      // Loaded outside of the registry's lock, so that loading one model does not hold up others.
+      final Object model = entry.get();
+      synchronized (ModelRegistry.class)
+      {
+        ENTRIES_BY_MODEL.put(model, entry);
+      }
+      return (T) model;
+    }
+    catch (RuntimeException | LinkageError x)
+    {
+      synchronized (ModelRegistry.class)
+      {
+        if (--entry.holders == 0)
+        {
+          ENTRIES.remove(key);
+        }
+      }
+      throw x;
+    }
+  }
+
+  protected static class Entry
+  {
+
+    protected final List<Object> key;
+    protected final Supplier<Object> loader;
+    protected final Consumer<Object> closer;
+    /** Guarded by the registry's lock. */
+    protected int holders;
+    protected Object model;
+
+    protected Entry(final List<Object> key,
+                    final Supplier<Object> loader,
+                    final Consumer<Object> closer)
+    {
+      this.key = key;
+      this.loader = loader;
+      this.closer = closer;
+    }
+
+    protected synchronized Object get()
+    {
+      if (isNull(model))
+      {
+        final long start = System.nanoTime();
+        model = loader.get();
+        LOG.debug("Loaded {} in {} ms", key, (System.nanoTime() - start) / 1_000_000);
+      }
+      return model;
+    }
+
+    protected synchronized void close()
+    {
+      if (nonNull(model))
+      {
+        closer.accept(model);
+        model = null;
+      }
+    }
+
+  }
+
+}
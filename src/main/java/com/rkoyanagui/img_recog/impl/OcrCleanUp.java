@@ -1,10 +1,12 @@
 package com.rkoyanagui.img_recog.impl;
 
 import java.util.function.Function;
+import java.util.regex.Pattern;
 
 /**
  * Represents functions to apply to OCR'ed text, before the test/predicate is applied, presumably to
- * clean the text up and remove unwanted or insignificant characters.
+ * clean the text up and remove unwanted or insignificant characters. Regular expressions are
+ * compiled once, when the class is loaded, not every time some text is cleaned up.
  */
 public enum OcrCleanUp
 {
@@ -13,24 +15,16 @@ public enum OcrCleanUp
   NONE(s -> s),
   /** See {@link String#trim}. */
   TRIM(s -> s.trim()),
-  /** Uses {@link String#replaceAll} to remove all digits: {@code \d} or {@code [0-9]}. */
-  REMOVE_ALL_DIGITS(s -> s.replaceAll("\\d", "")),
-  /** Uses {@link String#replaceAll} to remove all non-digits: {@code \D} or {@code [^0-9]}. */
-  REMOVE_ALL_NON_DIGITS(s -> s.replaceAll("\\D", "")),
-  /**
-   * Uses {@link String#replaceAll} to remove all whitespaces: {@code \s} or {@code [
-   * \t\n\x0B\f\r]}.
-   */
-  REMOVE_ALL_SPACES(s -> s.replaceAll("\\s", "")),
-  /**
-   * Uses {@link String#replaceAll} to remove all word characters: {@code \w} or {@code
-   * [a-zA-Z_0-9]}.
-   */
-  REMOVE_ALL_WORD_CHARS(s -> s.replaceAll("\\s", "")),
-  /**
-   * Uses {@link String#replaceAll} to remove all non-word characters: {@code \W} or {@code [^\w]}.
-   */
-  REMOVE_ALL_NON_WORD_CHARS(s -> s.replaceAll("\\s", ""));
+  /** Removes all digits: {@code \d} or {@code [0-9]}. */
+  REMOVE_ALL_DIGITS(Pattern.compile("\\d")),
+  /** Removes all non-digits: {@code \D} or {@code [^0-9]}. */
+  REMOVE_ALL_NON_DIGITS(Pattern.compile("\\D")),
+  /** Removes all whitespaces: {@code \s} or {@code [ \t\n\x0B\f\r]}. */
+  REMOVE_ALL_SPACES(Pattern.compile("\\s")),
+  /** Removes all word characters: {@code \w} or {@code [a-zA-Z_0-9]}. */
+  REMOVE_ALL_WORD_CHARS(Pattern.compile("\\w")),
+  /** Removes all non-word characters: {@code \W} or {@code [^\w]}. */
+  REMOVE_ALL_NON_WORD_CHARS(Pattern.compile("\\W"));
 
   /** A function from an original {@link String} to a cleaned-up {@link String}. */
   public final Function<String, String> f;
@@ -41,4 +35,12 @@ public enum OcrCleanUp
     this.f = f;
   }
 
+  /**
+   * @param removed the characters to be removed
+   */
+  OcrCleanUp(final Pattern removed)
+  {
+    this(s -> removed.matcher(s).replaceAll(""));
+  }
+
 }
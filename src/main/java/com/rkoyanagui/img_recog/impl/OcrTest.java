@@ -1,22 +1,66 @@
 package com.rkoyanagui.img_recog.impl;
 
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
+/**
+ * What test a piece of text must pass to be considered as successfully found. The work that does
+ * not depend on the text, like compiling a regular expression, or lower-casing the search term, is
+ * done once per predicate, when the predicate is made, not once per text tested.
+ */
 public enum OcrTest
 {
 
-  EQUALS(searchTerm -> s -> s.trim().equals(searchTerm)),
-  EQUALS_IGNORE_CASE(searchTerm -> s -> s.trim().equalsIgnoreCase(searchTerm)),
-  CONTAINS(searchTerm -> s -> s.contains(searchTerm)),
-  CONTAINS_IGNORE_CASE(searchTerm -> s -> s.toLowerCase().contains(searchTerm.toLowerCase())),
-  REGEX(searchTerm -> s -> s.matches(searchTerm));
+  EQUALS((searchTerm, maxEditDistance) -> s -> s.trim().equals(searchTerm)),
+  EQUALS_IGNORE_CASE((searchTerm, maxEditDistance) -> s -> s.trim().equalsIgnoreCase(searchTerm)),
+  CONTAINS((searchTerm, maxEditDistance) -> s -> s.contains(searchTerm)),
+  CONTAINS_IGNORE_CASE((searchTerm, maxEditDistance) -> {
+    final String lowerCaseSearchTerm = searchTerm.toLowerCase();
+    return s -> s.toLowerCase().contains(lowerCaseSearchTerm);
+  }),
+  REGEX((searchTerm, maxEditDistance) -> {
+    final Pattern pattern = Pattern.compile(searchTerm);
+    return s -> pattern.matcher(s).matches();
+  }),
+  /**
+   * The text, trimmed, is the search term but for at most {@link
+   * com.rkoyanagui.img_recog.OcrMatchingBy#maxEditDistance} characters inserted, deleted or
+   * substituted, ignoring case and characters OCR confuses, like <i>O</i> and <i>0</i>. See {@link
+   * FuzzyText}.
+   */
+  FUZZY_EQUALS(FuzzyText::equalsWithin),
+  /**
+   * The text contains the search term but for at most {@link
+   * com.rkoyanagui.img_recog.OcrMatchingBy#maxEditDistance} characters inserted, deleted or
+   * substituted, ignoring case and characters OCR confuses, like <i>O</i> and <i>0</i>. See {@link
+   * FuzzyText}.
+   */
+  FUZZY_CONTAINS(FuzzyText::containsWithin);
 
+  /** Makes the predicate for a search term, with the default maximum edit distance. */
   public final Function<String, Predicate<String>> predicateFactory;
+  /** Makes the predicate for a search term and a maximum edit distance. */
+  protected final BiFunction<String, Integer, Predicate<String>> predicateWithDistance;
 
-  OcrTest(final Function<String, Predicate<String>> predicateFactory)
+  OcrTest(final BiFunction<String, Integer, Predicate<String>> predicateWithDistance)
   {
-    this.predicateFactory = predicateFactory;
+    this.predicateWithDistance = predicateWithDistance;
+    this.predicateFactory =
+        searchTerm -> predicateWithDistance.apply(searchTerm, OcrMatching.MAX_EDIT_DISTANCE);
+  }
+
+  /**
+   * @param searchTerm      the search term
+   * @param maxEditDistance with {@link #FUZZY_EQUALS} and {@link #FUZZY_CONTAINS}, the maximum
+   *                        edit distance, ignored otherwise
+   * @return the predicate a text must pass
+   */
+  public Predicate<String> predicate(final String searchTerm, final int maxEditDistance)
+  {
+    return predicateWithDistance.apply(searchTerm, maxEditDistance);
   }
 
 }
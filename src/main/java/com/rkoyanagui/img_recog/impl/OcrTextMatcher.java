@@ -0,0 +1,111 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.rkoyanagui.img_recog.OcrMatchingBy;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The clean-ups and the test of an OCR locator, compiled into a single matcher, to be applied to
+ * every word recognised in every screenshot the locator looks at. Regular expressions are compiled,
+ * and the search term normalised, once per locator, not once per word.
+ * <p/>Matchers are kept, and shared, by every locator with the same search term, test, maximum
+ * edit distance and clean-ups, so that polling for an element does not compile it all over again.
+ * Only the most recently used ones are kept. Matchers may be used by any number of threads.
+ */
+class OcrTextMatcher
+{
+
+  /** Upper bound on the number of matchers kept. */
+  protected static final int CAPACITY = 256;
+  protected static final Map<List<Object>, OcrTextMatcher> MATCHERS =
+      new LinkedHashMap<List<Object>, OcrTextMatcher>(16, 0.75f, true)
+      {
+        private static final long serialVersionUID = 6203475328613945102L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<Object>, OcrTextMatcher> eldest)
+        {
+          return size() > CAPACITY;
+        }
+      };
+
+  /** The clean-ups, composed into one, see {@link OcrMatchingBy#cleanUp}. */
+  protected final Function<String, String> cleanUp;
+  /** The test, see {@link OcrMatchingBy#ocrTest}. */
+  protected final Predicate<String> test;
+
+  @SuppressWarnings("squid:S4276")
+  protected OcrTextMatcher(final Function<String, String> cleanUp, final Predicate<String> test)
+  {
+    this.cleanUp = cleanUp;
+    this.test = test;
+  }
+
+  /**
+   * @param params parameters for the OCR engine
+   * @return the matcher for the search term, test, maximum edit distance and clean-ups of the
+   * parameters, compiled now, or earlier for the same ones
+   */
+  protected static OcrTextMatcher of(final OcrMatchingBy params)
+  {
+    final int maxEditDistance = nonNull(params.getMaxEditDistance())
+        ? params.getMaxEditDistance()
+        : OcrMatching.MAX_EDIT_DISTANCE;
+    final List<OcrCleanUp> cleanUps = essential(params.getCleanUp());
+    final List<Object> key = Arrays.asList(params.getOcrTest(), params.getSearchTerm(),
+        maxEditDistance, cleanUps);
+    synchronized (MATCHERS)
+    {
+      OcrTextMatcher matcher = MATCHERS.get(key);
+      if (isNull(matcher))
+      {
+        matcher = new OcrTextMatcher(
+            TesseractOcrMatcher.composeTextCleaner(cleanUps.toArray(new OcrCleanUp[0])),
+            params.getOcrTest().predicate(params.getSearchTerm(), maxEditDistance));
+        MATCHERS.put(key, matcher);
+      }
+      return matcher;
+    }
+  }
+
+  /**
+   * @return whether a text, once cleaned up, passes the test
+   */
+  protected boolean matches(final String text)
+  {
+    return test.test(cleanUp.apply(text));
+  }
+
+  /**
+   * @return the clean-ups that change anything, i.e., all but {@link OcrCleanUp#NONE}, and but a
+   * {@link OcrCleanUp#TRIM} right after another
+   */
+  protected static List<OcrCleanUp> essential(final OcrCleanUp[] cleanUps)
+  {
+    if (isNull(cleanUps) || cleanUps.length == 0)
+    {
+      return Collections.emptyList();
+    }
+    final OcrCleanUp[] essential = new OcrCleanUp[cleanUps.length];
+    int n = 0;
+    for (final OcrCleanUp cleanUp : cleanUps)
+    {
+      if (cleanUp != OcrCleanUp.NONE
+          && !(cleanUp == OcrCleanUp.TRIM && n > 0 && essential[n - 1] == OcrCleanUp.TRIM))
+      {
+        essential[n++] = cleanUp;
+      }
+    }
+    return Arrays.asList(Arrays.copyOf(essential, n));
+  }
+
+}
@@ -0,0 +1,279 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
+import com.rkoyanagui.img_recog.OcrMatchingBy;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+import net.sourceforge.tess4j.Word;
+import org.opencv.core.Mat;
+
+/**
+ * The boxes where text was detected in an image, and the words recognised in them, so that any
+ * number of OCR locators looking at the same screenshot, with the same filters and text detection
+ * parameters, can share them instead of detecting and recognising text all over again. Boxes are
+ * only recognised when some locator needs them, and each box only once: a locator looking for a
+ * long word has no use for the text inside a short box, and the next locator may not either.
+ * <p/>Recognised words are also indexed by their text, exactly and ignoring case, and by the
+ * trigrams (runs of three characters) in it. That narrows down the words that may pass an {@link
+ * OcrTest#EQUALS}, {@link OcrTest#EQUALS_IGNORE_CASE}, {@link OcrTest#CONTAINS} or {@link
+ * OcrTest#CONTAINS_IGNORE_CASE} test to a handful, before the test itself is applied to them. The
+ * index is only of use if the words' text is tested as it was recognised, or merely trimmed.
+ */
+class OcrWordIndex
+{
+
+  protected static final int GRAM = 3;
+
+  /** The filtered image the text was detected in. */
+  protected final Mat img;
+  /** Text detection scores and boxes, from top to bottom, and from left to right. */
+  protected final List<Pair<Float, Rectangle>> boxes;
+  /** The word recognised in each box, or null if the box has not been recognised yet. */
+  protected final Word[] words;
+  /** Tesseract's confidence in each recognised word, from 0 to 100. */
+  protected final int[] textConfidences;
+  protected final SetMultimap<String, Integer> byText;
+  protected final SetMultimap<String, Integer> byFoldedText;
+  protected final SetMultimap<String, Integer> byTrigram;
+  protected final SetMultimap<String, Integer> byLowerCaseTrigram;
+
+  protected OcrWordIndex(final Mat img, final List<Pair<Float, Rectangle>> boxes)
+  {
+    this.img = img;
+    this.boxes = ImmutableList.copyOf(boxes);
+    this.words = new Word[boxes.size()];
+    this.textConfidences = new int[boxes.size()];
+    this.byText = HashMultimap.create();
+    this.byFoldedText = HashMultimap.create();
+    this.byTrigram = HashMultimap.create();
+    this.byLowerCaseTrigram = HashMultimap.create();
+  }
+
+  /**
+   * @return the number of boxes where text was detected
+   */
+  protected int size()
+  {
+    return boxes.size();
+  }
+
+  /**
+   * @return those of the given boxes that have not been recognised yet
+   */
+  protected synchronized int[] pending(final int[] boxes)
+  {
+    return Arrays.stream(boxes).filter(i -> isNull(words[i])).toArray();
+  }
+
+  /**
+   * Records the word recognised in a box.
+   *
+   * @param box            the box's index
+   * @param word           the word recognised in the box
+   * @param textConfidence Tesseract's confidence in the word, from 0 to 100
+   */
+  protected synchronized void put(final int box, final Word word, final int textConfidence)
+  {
+    if (nonNull(words[box]))
+    {
+      return;
+    }
+    words[box] = word;
+    textConfidences[box] = textConfidence;
+    final String text = word.getText();
+    if (nonNull(text))
+    {
+      byText.put(text, box);
+      byFoldedText.put(fold(text), box);
+      putTrigrams(byTrigram, text, box);
+      putTrigrams(byLowerCaseTrigram, text.toLowerCase(), box);
+    }
+  }
+
+  protected synchronized Word word(final int box)
+  {
+    return words[box];
+  }
+
+  protected synchronized int textConfidence(final int box)
+  {
+    return textConfidences[box];
+  }
+
+  /**
+   * @return every word recognised so far, in the order of their boxes
+   */
+  protected synchronized List<Word> words()
+  {
+    return Arrays.stream(words).filter(w -> nonNull(w)).collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Finds the boxes that may hold text passing the test described by the given parameters, judging
+   * only by their shape. With {@link OcrTest#EQUALS}, {@link OcrTest#EQUALS_IGNORE_CASE} and {@link
+   * OcrTest#FUZZY_EQUALS}, the text must be about as long as the search term, so boxes whose
+   * estimated number of characters is not within {@link OcrMatchingBy#lengthTolerance} of the
+   * search term's length are left out. If the clean-ups may remove characters, then longer boxes
+   * are kept all the same.
+   *
+   * @param params the search term, test and clean-ups
+   * @return the indices of the boxes worth recognising, in ascending order
+   */
+  protected int[] plausible(final OcrMatchingBy params)
+  {
+    final OcrTest test = params.getOcrTest();
+    if (test != OcrTest.EQUALS && test != OcrTest.EQUALS_IGNORE_CASE
+        && test != OcrTest.FUZZY_EQUALS)
+    {
+      return IntStream.range(0, size()).toArray();
+    }
+    final double tolerance = nonNull(params.getLengthTolerance())
+        ? params.getLengthTolerance()
+        : OcrMatching.LENGTH_TOLERANCE;
+    final int numOfChars = params.getSearchTerm().length();
+    final double minNumOfChars = numOfChars / (1.0 + tolerance);
+    final double maxNumOfChars = preservesText(params.getCleanUp())
+        ? numOfChars * (1.0 + tolerance)
+        : Double.POSITIVE_INFINITY;
+    return IntStream.range(0, size())
+        .filter(i -> {
+          final double estimate = TesseractOcrMatcher.estimatedNumOfChars(boxes.get(i).b);
+          return estimate >= minNumOfChars && estimate <= maxNumOfChars;
+        })
+        .toArray();
+  }
+
+  /**
+   * Finds, among some boxes, the words whose text, once cleaned up, passes the test described by
+   * the given parameters. Boxes not recognised yet are skipped.
+   *
+   * @param params the search term, test and clean-ups
+   * @param among  the indices of the boxes to look into, in ascending order
+   * @return the words found, in the order of their boxes. Words without any text are never found.
+   */
+  protected synchronized List<Word> find(final OcrMatchingBy params, final int[] among)
+  {
+    final OcrTextMatcher textMatcher = OcrTextMatcher.of(params);
+
+    final Collection<Integer> candidates = preservesText(params.getCleanUp())
+        ? candidates(params.getOcrTest(), params.getSearchTerm())
+        : null;
+    final int[] boxesToTest = isNull(candidates)
+        ? among
+        : candidates.stream()
+            .mapToInt(Integer::intValue)
+            .filter(i -> Arrays.binarySearch(among, i) >= 0)
+            .sorted()
+            .toArray();
+
+    final List<Word> found = new ArrayList<>();
+    for (final int i : boxesToTest)
+    {
+      // Words Tesseract failed to read have no text to be tested.
+      final Word w = words[i];
+      if (nonNull(w) && nonNull(w.getText()) && textMatcher.matches(w.getText()))
+      {
+        found.add(w);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return the indices of every recognised box that may pass the test, in no particular order, or
+   * {@code null} if the test cannot be narrowed down and every box must be tried
+   */
+  protected Collection<Integer> candidates(final OcrTest test, final String searchTerm)
+  {
+    switch (test)
+    {
+      case EQUALS:
+        // Words are trimmed when recognised.
+        return byText.get(searchTerm);
+      case EQUALS_IGNORE_CASE:
+        return byFoldedText.get(fold(searchTerm));
+      case CONTAINS:
+        return rarestTrigram(byTrigram, searchTerm);
+      case CONTAINS_IGNORE_CASE:
+        return rarestTrigram(byLowerCaseTrigram, searchTerm.toLowerCase());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Any text containing the search term contains all of its trigrams, so the words listed under
+   * the rarest one are the only ones worth trying.
+   */
+  protected static Collection<Integer> rarestTrigram(final SetMultimap<String, Integer> index,
+                                                     final String searchTerm)
+  {
+    if (searchTerm.length() < GRAM)
+    {
+      return null;
+    }
+    Collection<Integer> rarest = null;
+    for (int i = 0; i + GRAM <= searchTerm.length(); i++)
+    {
+      final Collection<Integer> words = index.get(searchTerm.substring(i, i + GRAM));
+      if (isNull(rarest) || words.size() < rarest.size())
+      {
+        rarest = words;
+      }
+    }
+    return rarest;
+  }
+
+  /**
+   * @return whether the clean-ups leave every recognised word's text as it is. Words are trimmed
+   * when recognised, so trimming them again changes nothing.
+   */
+  protected static boolean preservesText(final OcrCleanUp[] cleanUps)
+  {
+    if (nonNull(cleanUps))
+    {
+      for (final OcrCleanUp cleanUp : cleanUps)
+      {
+        if (cleanUp != OcrCleanUp.NONE && cleanUp != OcrCleanUp.TRIM)
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Maps each character the way {@link String#equalsIgnoreCase} compares it, so that two strings
+   * equal ignoring case always have the same folded form.
+   */
+  protected static String fold(final String text)
+  {
+    final StringBuilder folded = new StringBuilder(text.length());
+    text.codePoints()
+        .forEach(c -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+    return folded.toString();
+  }
+
+  protected static void putTrigrams(final SetMultimap<String, Integer> index,
+                                    final String text,
+                                    final int box)
+  {
+    for (int i = 0; i + GRAM <= text.length(); i++)
+    {
+      index.put(text.substring(i, i + GRAM), box);
+    }
+  }
+
+}
@@ -2,23 +2,28 @@ package com.rkoyanagui.img_recog.impl;
 
 import static java.util.Objects.nonNull;
 
+import com.google.common.collect.ImmutableList;
 import com.rkoyanagui.img_recog.Extensions;
 import com.rkoyanagui.img_recog.FeatureMatchingBy;
+import com.rkoyanagui.img_recog.ImgRecogMethod;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.FeatureMatching;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import org.opencv.calib3d.Calib3d;
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
-import org.opencv.core.DMatch;
-import org.opencv.core.KeyPoint;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
 import org.opencv.core.MatOfDMatch;
 import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
@@ -27,6 +32,7 @@ import org.opencv.features2d.BFMatcher;
 import org.opencv.features2d.DescriptorMatcher;
 import org.opencv.features2d.Feature2D;
 import org.opencv.features2d.Features2d;
+import org.opencv.features2d.FlannBasedMatcher;
 import org.opencv.features2d.ORB;
 import org.opencv.imgproc.Imgproc;
 import org.openqa.selenium.Dimension;
@@ -38,6 +44,8 @@ class OpenCvFeatureMatcher
   protected static final int THICKNESS_1 = 1;
   protected static final int THICKNESS_3 = 3;
   protected static final String VISUALISE_MSG = "DEBUG Img Recog Feature Match";
+  /** Levenberg-Marquardt iterations refining an affine estimate on its inliers. */
+  protected static final long AFFINE_REFINE_ITERS = 10;
 
   protected OpenCvFeatureMatcher()
   {
@@ -50,58 +58,34 @@ class OpenCvFeatureMatcher
    * faster than SURF and SIFT, and is freely licensed. The algorithm is scale-invariant and
    * rotation-invariant.
    *
-   * @param queryImg  the first picture
-   * @param trainImg  the second picture
-   * @param params    parameters for the algorithm
-   * @param visualise to activate "debug" mode and see how the pictures were processed
+   * @param queryImg   the first picture
+   * @param trainImg   the second picture
+   * @param params     parameters for the algorithm
+   * @param frameCache where to look up, or store, the second picture's keypoints
+   * @param visualise  to activate "debug" mode and see how the pictures were processed
    * @return a {@link FeatureMatchResult}, if the actual number of matches is greater than or equal
    * to {@code minNumOfMatches} in {@link FeatureMatchingBy}. Otherwise, returns nothing.
    */
   protected static Optional<FeatureMatchResult> matchFeatures(final Mat queryImg,
                                                               final Mat trainImg,
                                                               final FeatureMatchingBy params,
+                                                              final FrameCache frameCache,
                                                               final boolean visualise)
   {
 
     final Mat iQueryImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(queryImg.clone());
-    final Mat iTrainImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(trainImg.clone());
-    final int qFeatures = params.getQueryImgFeatures();
-    final int tFeatures = params.getTrainImgFeatures();
     final int minNumOfMatches = params.getMinNumOfMatches();
     final int numOfMatchesToKeep = params.getNumOfMatchesToKeep();
-
-    final float scaleFactor = params.getScaleFactor();
-    final int nlevels = params.getNlevels();
-    final int edgeThreshold = params.getEdgeThreshold();
-    final int firstLevel = params.getFirstLevel();
-    final int wtaK = params.getWtaK();
-    final int scoreType = params.getScoreType();
-    final int patchSize = params.getPatchSize();
-    final int fastThreshold = params.getFastThreshold();
-    final int normType;
-    if (wtaK == 2)
-    {
-      normType = Core.NORM_HAMMING;
-    }
-    else
-    {
-      normType = Core.NORM_HAMMING2;
-    }
+    final int normType = normType(params.getWtaK());
 
     // 1) Detects keypoints using ORB Detector. Computes the descriptors.
-    final Feature2D qDetector = ORB.create(qFeatures, scaleFactor, nlevels, edgeThreshold,
-        firstLevel, wtaK, scoreType, patchSize, fastThreshold);
-    final Feature2D tDetector = ORB.create(tFeatures, scaleFactor, nlevels, edgeThreshold,
-        firstLevel, wtaK, scoreType, patchSize, fastThreshold);
-
-    final MatOfKeyPoint qKeyPoints = new MatOfKeyPoint();
-    final Mat qDescriptors = new Mat(1, 1, CvType.CV_32F);
-
-    final MatOfKeyPoint tKeyPoints = new MatOfKeyPoint();
-    final Mat tDescriptors = new Mat(1, 1, CvType.CV_32F);
-
-    qDetector.detectAndCompute(iQueryImg, new Mat(), qKeyPoints, qDescriptors);
-    tDetector.detectAndCompute(iTrainImg, new Mat(), tKeyPoints, tDescriptors);
+    final double scale = downscaleFactor(queryImg, trainImg, params);
+    final Features qFeatures =
+        detectAndCompute(iQueryImg, params.getQueryImgFeatures(), params, scale);
+    final Features tFeatures = trainFeatures(trainImg, params, scale, frameCache);
+    final Mat iTrainImg = tFeatures.img;
+    final MatOfKeyPoint qKeyPoints = qFeatures.keyPoints;
+    final MatOfKeyPoint tKeyPoints = tFeatures.keyPoints;
 
     if (qKeyPoints.empty() || tKeyPoints.empty())
     {
@@ -109,104 +93,357 @@ class OpenCvFeatureMatcher
     }
 
     // 2) Matches descriptor vectors with NORM_HAMMING, since ORB is a binary descriptor.
-    final DescriptorMatcher matcher = BFMatcher.create(normType, true);
-    final MatOfDMatch matches = new MatOfDMatch();
-    matcher.match(qDescriptors, tDescriptors, matches);
+    final Matches matches =
+        matchDescriptors(qFeatures.descriptors, tFeatures.descriptors, normType, params);
 
     // 3) Sorts by metric (Hamming) distance.
     // The less distance between two matched descriptors, the better.
-    final List<DMatch> matchesList = matches.toList();
-    matchesList.sort(Comparator.comparing(m -> m.distance));
+    matches.sortByDistance();
 
     // 4) Picks the first N best matches.
-    final List<DMatch> bestMatches;
-    final int numOfMatches = matchesList.size();
+    final int numOfMatches = matches.size;
     final boolean isAboveThreshold = numOfMatches >= minNumOfMatches;
-    if (numOfMatches > numOfMatchesToKeep)
-    {
-      bestMatches = matchesList.subList(0, numOfMatchesToKeep);
-    }
-    else
-    {
-      bestMatches = matchesList;
-    }
+    final Matches bestMatches = matches.limit(numOfMatchesToKeep);
 
     if (isAboveThreshold)
     {
       final Size tSize = trainImg.size();
       final Dimension tDimension = new Dimension((int) tSize.width, (int) tSize.height);
-      final FeatureMatchResult mr =
-          calculateRectangle(iQueryImg, iTrainImg, qKeyPoints, tKeyPoints, bestMatches)
-              .withMinNumOfMatches(minNumOfMatches)
+      final Optional<FeatureMatchResult> mr = calculateRectangle(iQueryImg, iTrainImg, qFeatures,
+          tFeatures, bestMatches, params, visualise)
+          .map(r -> r.withMinNumOfMatches(minNumOfMatches)
               .withActualNumOfMatches(numOfMatches)
-              .withSrcImgDimension(tDimension);
-      if (visualise)
+              .withSrcImgDimension(tDimension));
+      if (mr.isPresent())
       {
-        visualise(params, mr);
+        if (visualise)
+        {
+          visualise(params, mr.get());
+        }
+        return mr;
       }
-      return Optional.of(mr);
+    }
+    if (visualise)
+    {
+      visualiseKeypoints(params, iQueryImg, iTrainImg, qKeyPoints, tKeyPoints, numOfMatches);
+    }
+    return Optional.empty();
+
+  }
+
+  /**
+   * Finds every occurrence of the query picture inside the training picture, using the same
+   * features as {@link #matchFeatures(Mat, Mat, FeatureMatchingBy, FrameCache, boolean)}.
+   * Keypoints are detected only once in each picture. Then the transformation between both
+   * pictures is estimated over and over: after each estimate, the matches that agree with it (the
+   * inliers) are taken to be one occurrence, and are removed from the pool, and estimation starts
+   * again on the remaining matches. This goes on until fewer than {@code minNumOfMatches} matches
+   * remain, or until an estimate has fewer than {@code minNumOfMatches} inliers.
+   * <p/>Since the same query keypoint must be able to match one keypoint in each occurrence, the
+   * training descriptors are matched against the query descriptors, and not the other way round.
+   * For the same reason, {@code numOfMatchesToKeep} does not apply here: every match is kept.
+   *
+   * @param queryImg   the first picture
+   * @param trainImg   the second picture
+   * @param params     parameters for the algorithm
+   * @param frameCache where to look up, or store, the second picture's keypoints
+   * @param visualise  to activate "debug" mode and see how the pictures were processed
+   * @return a list of {@link FeatureMatchResult}, one per occurrence, in the order in which they
+   * were found (the one with the most inliers first), or an empty list.
+   */
+  protected static List<FeatureMatchResult> matchAllFeatures(final Mat queryImg,
+                                                             final Mat trainImg,
+                                                             final FeatureMatchingBy params,
+                                                             final FrameCache frameCache,
+                                                             final boolean visualise)
+  {
+    final Mat iQueryImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(queryImg.clone());
+    final int minNumOfMatches = params.getMinNumOfMatches();
+    final int normType = normType(params.getWtaK());
+
+    final double scale = downscaleFactor(queryImg, trainImg, params);
+    final Features qFeatures =
+        detectAndCompute(iQueryImg, params.getQueryImgFeatures(), params, scale);
+    final Features tFeatures = trainFeatures(trainImg, params, scale, frameCache);
+    final Mat iTrainImg = tFeatures.img;
+
+    if (qFeatures.keyPoints.empty() || tFeatures.keyPoints.empty())
+    {
+      return ImmutableList.of();
+    }
+
+    // Matches in the training-to-query direction, then swaps the indices back, so that 'queryIdx'
+    // still refers to the query image, and 'trainIdx' to the training image.
+    final Matches reverseMatches;
+    if (params.getDescriptorMatching() == DescriptorMatching.FLANN_LSH)
+    {
+      reverseMatches =
+          matchDescriptors(tFeatures.descriptors, qFeatures.descriptors, normType, params);
     }
     else
     {
-      if (visualise)
+      reverseMatches = matchDescriptorsOneWay(tFeatures.descriptors, qFeatures.descriptors,
+          normType, ratioThreshold(params));
+    }
+    Matches remaining = reverseMatches.swapped();
+    remaining.sortByDistance();
+
+    final Size tSize = trainImg.size();
+    final Dimension tDimension = new Dimension((int) tSize.width, (int) tSize.height);
+    final List<FeatureMatchResult> mrs = new ArrayList<>();
+    while (remaining.size >= minNumOfMatches)
+    {
+      final MatOfPoint2f mqps = qFeatures.points(remaining.queryIdx, remaining.size);
+      final MatOfPoint2f mtps = tFeatures.points(remaining.trainIdx, remaining.size);
+      final Mat mask = new Mat();
+      final Mat homography = estimateTransform(mqps, mtps, params, mask);
+      if (homography.empty())
       {
-        visualiseKeypoints(params, iQueryImg, iTrainImg, qKeyPoints, tKeyPoints, numOfMatches);
+        break;
       }
-      return Optional.empty();
+      final byte[] inlierMask = new byte[remaining.size];
+      mask.get(0, 0, inlierMask);
+      final Matches inliers = remaining.select(inlierMask, true);
+      if (inliers.size < minNumOfMatches)
+      {
+        break;
+      }
+      final float[] corners = projectCorners(iQueryImg, homography);
+      if (isPlausibleQuadrilateral(corners))
+      {
+        mrs.add(new FeatureMatchResult(toRectangle(corners), iTrainImg)
+            .withMinNumOfMatches(minNumOfMatches)
+            .withActualNumOfMatches(inliers.size)
+            .withSrcImgDimension(tDimension));
+      }
+      remaining = remaining.select(inlierMask, false);
+    }
+
+    if (visualise)
+    {
+      visualise(params, mrs, iTrainImg, iQueryImg);
+    }
+    return mrs;
+  }
+
+  /**
+   * Pairs up query descriptors with training descriptors, according to {@link
+   * FeatureMatchingBy#getDescriptorMatching()}.
+   *
+   * @param qDescriptors the query image's descriptors
+   * @param tDescriptors the training image's descriptors
+   * @param normType     the distance metric, used by the brute-force matcher
+   * @param params       parameters for the algorithm
+   * @return the matches, in no particular order
+   */
+  protected static Matches matchDescriptors(final Mat qDescriptors,
+                                                 final Mat tDescriptors,
+                                                 final int normType,
+                                                 final FeatureMatchingBy params)
+  {
+    if (params.getDescriptorMatching() == DescriptorMatching.FLANN_LSH)
+    {
+      // Each call gets its own copy of the pre-configured matcher, because the index it builds
+      // from the training descriptors is not meant to be shared between threads.
+      final DescriptorMatcher matcher = LshMatcher.PROTOTYPE.clone(true);
+      final List<MatOfDMatch> knnMatches = new ArrayList<>();
+      matcher.knnMatch(qDescriptors, tDescriptors, knnMatches, 2);
+      return ratioTest(knnMatches, params.getRatioThreshold());
+    }
+    else
+    {
+      final DescriptorMatcher matcher = BFMatcher.create(normType, true);
+      final MatOfDMatch matches = new MatOfDMatch();
+      matcher.match(qDescriptors, tDescriptors, matches);
+      return Matches.of(matches);
     }
+  }
 
+  /**
+   * Pairs up each query descriptor with its nearest training descriptor, by brute force, without
+   * cross-checking, so several query descriptors may be paired with the same training descriptor.
+   * Without the cross-check, most pairs would be spurious, so Lowe's ratio test is applied
+   * instead.
+   *
+   * @param qDescriptors   the query image's descriptors
+   * @param tDescriptors   the training image's descriptors
+   * @param normType       the distance metric
+   * @param ratioThreshold see {@link FeatureMatchingBy#getRatioThreshold()}
+   * @return the matches, in no particular order
+   */
+  protected static Matches matchDescriptorsOneWay(final Mat qDescriptors,
+                                                       final Mat tDescriptors,
+                                                       final int normType,
+                                                       final float ratioThreshold)
+  {
+    final DescriptorMatcher matcher = BFMatcher.create(normType, false);
+    final List<MatOfDMatch> knnMatches = new ArrayList<>();
+    matcher.knnMatch(qDescriptors, tDescriptors, knnMatches, 2);
+    return ratioTest(knnMatches, ratioThreshold);
+  }
+
+  /**
+   * Returns {@link FeatureMatchingBy#getRatioThreshold()}, or its default value if it was not
+   * set, which can only happen for {@link DescriptorMatching#BRUTE_FORCE}.
+   *
+   * @param params parameters for the algorithm
+   * @return the ratio test threshold
+   */
+  protected static float ratioThreshold(final FeatureMatchingBy params)
+  {
+    return nonNull(params.getRatioThreshold())
+        ? params.getRatioThreshold()
+        : FeatureMatching.RATIO_THRESHOLD;
   }
 
-  protected static FeatureMatchResult calculateRectangle(final Mat queryImg,
-                                                         final Mat trainImg,
-                                                         final MatOfKeyPoint qKeyPoints,
-                                                         final MatOfKeyPoint tKeyPoints,
-                                                         final List<DMatch> bestMatches)
+  /**
+   * Applies Lowe's ratio test: keeps the nearest neighbour of each query descriptor only if it is
+   * closer than {@code ratioThreshold} times the distance to the second nearest neighbour. Query
+   * descriptors that got fewer than two neighbours are discarded, as there is no way of telling
+   * whether their match is distinctive.
+   *
+   * @param knnMatches     the two nearest neighbours of each query descriptor
+   * @param ratioThreshold the maximum ratio between the first and second distances
+   * @return the matches that passed the test
+   */
+  protected static Matches ratioTest(final List<MatOfDMatch> knnMatches,
+                                     final float ratioThreshold)
   {
-    // query image keypoint array
-    final KeyPoint[] qkp = qKeyPoints.toArray();
-    // train image keypoint array
-    final KeyPoint[] tkp = tKeyPoints.toArray();
-    // Finds the coordinates of every keypoint corresponding to the best matches.
-    final List<Point> qps = bestMatches.stream()
-        .map(m -> qkp[m.queryIdx].pt)
-        .collect(Collectors.toList());
-    final List<Point> tps = bestMatches.stream()
-        .map(m -> tkp[m.trainIdx].pt)
-        .collect(Collectors.toList());
-    // matrix of query image points
-    final MatOfPoint2f mqps = new MatOfPoint2f();
-    mqps.fromList(qps);
-    // matrix of train image points
-    final MatOfPoint2f mtps = new MatOfPoint2f();
-    mtps.fromList(tps);
+    final Matches goodMatches = new Matches(knnMatches.size());
+    // Each neighbour is laid out as 'queryIdx, trainIdx, imgIdx, distance'.
+    final float[] pair = new float[8];
+    for (final MatOfDMatch knn : knnMatches)
+    {
+      if (knn.rows() >= 2)
+      {
+        knn.get(0, 0, pair);
+        if (pair[3] < ratioThreshold * pair[7])
+        {
+          goodMatches.add((int) pair[0], (int) pair[1], pair[3]);
+        }
+      }
+    }
+    return goodMatches;
+  }
+
+  protected static Optional<FeatureMatchResult> calculateRectangle(final Mat queryImg,
+                                                                   final Mat trainImg,
+                                                                   final Features qFeatures,
+                                                                   final Features tFeatures,
+                                                                   final Matches bestMatches,
+                                                                   final FeatureMatchingBy params,
+                                                                   final boolean visualise)
+  {
+    // matrices of the query image and train image points corresponding to the best matches
+    final MatOfPoint2f mqps = qFeatures.points(bestMatches.queryIdx, bestMatches.size);
+    final MatOfPoint2f mtps = tFeatures.points(bestMatches.trainIdx, bestMatches.size);
     final Mat mask = new Mat();
 
     // Calculates a transformation matrix between the plane of the query image and the plane of
     // the train image. So the query image can be located inside the train image regardless of any
     // rotation, flipping, or perspective distortions. The matrix is estimated from the keypoints.
-    final Mat homography = Calib3d.findHomography(mqps, mtps, Calib3d.RANSAC, 5.0, mask);
+    final Mat homography = estimateTransform(mqps, mtps, params, mask);
+    if (homography.empty())
+    {
+      return Optional.empty();
+    }
 
-    // Get the corners from the query image
-    final Mat qCorners = new Mat(4, 1, CvType.CV_32FC2);
-    final Mat tCorners = new Mat();
-    final int qCols = queryImg.cols();
-    float[] qCornersData = new float[(int) (qCorners.total() * qCorners.channels())];
-    qCorners.get(0, 0, qCornersData);
-    qCornersData[0] = 0;
-    qCornersData[1] = 0;
-    qCornersData[2] = qCols;
-    qCornersData[3] = 0;
-    qCornersData[4] = qCols;
-    qCornersData[5] = queryImg.rows();
-    qCornersData[6] = 0;
-    qCornersData[7] = queryImg.rows();
-    qCorners.put(0, 0, qCornersData);
+    final float[] tCornersData = projectCorners(queryImg, homography);
+    final Rectangle rect = toRectangle(tCornersData);
+    if (!visualise)
+    {
+      return Optional.of(new FeatureMatchResult(rect, trainImg));
+    }
+    final Mat drawnMatch = drawMatches(queryImg, trainImg, qFeatures, tFeatures, bestMatches,
+        mask, tCornersData, rect);
+    return Optional.of(new FeatureMatchResult(rect, drawnMatch));
+  }
 
-    // Applies the homography matrix to find the query image corners in the train image.
-    Core.perspectiveTransform(qCorners, tCorners, homography);
-    float[] tCornersData = new float[(int) (tCorners.total() * tCorners.channels())];
-    tCorners.get(0, 0, tCornersData);
+  /**
+   * Estimates the transformation from the query image's plane to the training image's, according
+   * to {@link FeatureMatchingBy#getVerification()}, and marks which matches agree with it.
+   *
+   * @param qPoints the query image's matched keypoints
+   * @param tPoints the training image's matched keypoints, in the same order
+   * @param params  parameters for the algorithm
+   * @param mask    where to mark, with a non-zero element, every match that agrees with the
+   *                estimate (an inlier)
+   * @return a 3x3 matrix to be used as a homography, even if the model is affine, or an empty
+   * matrix, if no transformation could be estimated
+   */
+  protected static Mat estimateTransform(final MatOfPoint2f qPoints,
+                                         final MatOfPoint2f tPoints,
+                                         final FeatureMatchingBy params,
+                                         final Mat mask)
+  {
+    final double threshold = nonNull(params.getReprojectionThreshold())
+        ? params.getReprojectionThreshold()
+        : FeatureMatching.REPROJECTION_THRESHOLD;
+    final int maxIters = nonNull(params.getMaxIters())
+        ? params.getMaxIters()
+        : FeatureMatching.MAX_ITERS;
+    final double confidence = nonNull(params.getConfidence())
+        ? params.getConfidence()
+        : FeatureMatching.CONFIDENCE;
+    final GeometricVerification verification = nonNull(params.getVerification())
+        ? params.getVerification()
+        : GeometricVerification.HOMOGRAPHY;
+    switch (verification)
+    {
+      case HOMOGRAPHY_USAC:
+        return Calib3d.findHomography(qPoints, tPoints, Calib3d.USAC_FAST, threshold, mask,
+            maxIters, confidence);
+      case HOMOGRAPHY_PROSAC:
+        return Calib3d.findHomography(qPoints, tPoints, Calib3d.USAC_PROSAC, threshold, mask,
+            maxIters, confidence);
+      case AFFINE:
+        return toHomography(Calib3d.estimateAffine2D(qPoints, tPoints, mask, Calib3d.RANSAC,
+            threshold, maxIters, confidence, AFFINE_REFINE_ITERS));
+      case SIMILARITY:
+        return toHomography(Calib3d.estimateAffinePartial2D(qPoints, tPoints, mask,
+            Calib3d.RANSAC, threshold, maxIters, confidence, AFFINE_REFINE_ITERS));
+      case HOMOGRAPHY:
+      default:
+        return Calib3d.findHomography(qPoints, tPoints, Calib3d.RANSAC, threshold, mask,
+            maxIters, confidence);
+    }
+  }
+
+  /**
+   * Appends the row {@code 0, 0, 1} to a 2x3 affine transformation matrix, so that it can be
+   * applied as a homography.
+   *
+   * @param affine the affine transformation, or an empty matrix
+   * @return the equivalent homography, or an empty matrix
+   */
+  protected static Mat toHomography(final Mat affine)
+  {
+    if (affine.empty())
+    {
+      return affine;
+    }
+    final Mat lastRow = new Mat(1, 3, affine.type());
+    lastRow.put(0, 0, 0, 0, 1);
+    final Mat homography = new Mat();
+    Core.vconcat(Arrays.asList(affine, lastRow), homography);
+    return homography;
+  }
+
+  /**
+   * Draws both pictures side by side, with lines between matched keypoints (the inliers only), the
+   * outline of the query picture as mapped into the training picture, and the rectangle
+   * approximating that outline.
+   */
+  protected static Mat drawMatches(final Mat queryImg,
+                                   final Mat trainImg,
+                                   final Features qFeatures,
+                                   final Features tFeatures,
+                                   final Matches bestMatches,
+                                   final Mat mask,
+                                   final float[] tCornersData,
+                                   final Rectangle rect)
+  {
+    final int qCols = queryImg.cols();
 
     // points for each of the four corners
     final Point p0 = new Point(tCornersData[0], tCornersData[1]); // upper left
@@ -214,21 +451,6 @@ class OpenCvFeatureMatcher
     final Point p2 = new Point(tCornersData[4], tCornersData[5]); // lower right
     final Point p3 = new Point(tCornersData[6], tCornersData[7]); // lower left
 
-    // Builds a rectangle anchored in the upper left corner. Works well as an approximation when
-    // there are only four corners roughly box-shaped.
-    final Rectangle rect = new Rectangle(
-        (int) p0.x,
-        (int) p0.y,
-        (int) (p3.y - p0.y - 1),
-        (int) (p1.x - p0.x - 1))
-    {
-      @Override
-      public String toString()
-      {
-        return String.format("Rectangle(x=%d, y=%d, width=%d, height=%d)", x, y, width, height);
-      }
-    };
-
     // rectangle points
     final Point rp0 = new Point(rect.x, rect.y);
     final Point rp1 = new Point((double) rect.x + rect.width, rect.y);
@@ -247,22 +469,85 @@ class OpenCvFeatureMatcher
     final Point drp2 = new Point(rp2.x + qCols, rp2.y);
     final Point drp3 = new Point(rp3.x + qCols, rp3.y);
 
-    final MatOfDMatch bestMatOfDMatch = new MatOfDMatch();
-    bestMatOfDMatch.fromList(bestMatches);
     final Mat drawnMatch = new Mat();
-    Features2d.drawMatches(queryImg, qKeyPoints, trainImg, tKeyPoints, bestMatOfDMatch,
-        drawnMatch, OpenCvImgUtils.GREEN, OpenCvImgUtils.GREEN, new MatOfByte(mask),
-        Features2d.DrawMatchesFlags_NOT_DRAW_SINGLE_POINTS);
+    Features2d.drawMatches(queryImg, qFeatures.keyPoints, trainImg, tFeatures.keyPoints,
+        bestMatches.toMat(), drawnMatch, OpenCvImgUtils.GREEN, OpenCvImgUtils.GREEN,
+        new MatOfByte(mask), Features2d.DrawMatchesFlags_NOT_DRAW_SINGLE_POINTS);
 
     // Draw lines between the corners (the mapped query image in the train image)
     final Mat drawnMatch1 = drawPolygon(drawnMatch, OpenCvImgUtils.BLUE, THICKNESS_3,
         dp0, dp1, dp2, dp3);
 
     // Draw the corrected rectangle (anchored in the upper left corner)
-    final Mat drawnMatch2 = drawPolygon(drawnMatch1, OpenCvImgUtils.RED, THICKNESS_1,
-        drp0, drp1, drp2, drp3);
+    return drawPolygon(drawnMatch1, OpenCvImgUtils.RED, THICKNESS_1, drp0, drp1, drp2, drp3);
+  }
+
+  /**
+   * Applies a homography matrix to the four corners of the query image, to find where they land in
+   * the training image.
+   *
+   * @param queryImg   the query image
+   * @param homography the transformation from the query image's plane to the training image's
+   * @return the transformed corners' coordinates, as {@code x0, y0, x1, y1, x2, y2, x3, y3}, in the
+   * order upper left, upper right, lower right, lower left
+   */
+  protected static float[] projectCorners(final Mat queryImg, final Mat homography)
+  {
+    // Get the corners from the query image
+    final Mat qCorners = new Mat(4, 1, CvType.CV_32FC2);
+    final Mat tCorners = new Mat();
+    final int qCols = queryImg.cols();
+    final int qRows = queryImg.rows();
+    qCorners.put(0, 0, 0, 0, qCols, 0, qCols, qRows, 0, qRows);
+
+    // Applies the homography matrix to find the query image corners in the train image.
+    Core.perspectiveTransform(qCorners, tCorners, homography);
+    final float[] tCornersData = new float[(int) (tCorners.total() * tCorners.channels())];
+    tCorners.get(0, 0, tCornersData);
+    return tCornersData;
+  }
+
+  /**
+   * Builds a rectangle anchored in the upper left corner. Works well as an approximation when there
+   * are only four corners roughly box-shaped.
+   *
+   * @param corners as returned by {@link #projectCorners(Mat, Mat)}
+   * @return the approximate rectangle
+   */
+  protected static Rectangle toRectangle(final float[] corners)
+  {
+    return new Rectangle(
+        (int) corners[0],
+        (int) corners[1],
+        (int) (corners[7] - corners[1] - 1),
+        (int) (corners[2] - corners[0] - 1))
+    {
+      @Override
+      public String toString()
+      {
+        return String.format("Rectangle(x=%d, y=%d, width=%d, height=%d)", x, y, width, height);
+      }
+    };
+  }
 
-    return new FeatureMatchResult(rect, drawnMatch2);
+  /**
+   * When looking for several occurrences, RANSAC may still reach a consensus among leftover
+   * matches that do not belong to any real occurrence. Such estimates tend to fold or collapse the
+   * query image's outline, so only convex outlines with a positive width and height are accepted.
+   *
+   * @param corners as returned by {@link #projectCorners(Mat, Mat)}
+   * @return whether the corners could be those of an actual occurrence
+   */
+  protected static boolean isPlausibleQuadrilateral(final float[] corners)
+  {
+    final MatOfPoint outline = new MatOfPoint(
+        new Point(corners[0], corners[1]),
+        new Point(corners[2], corners[3]),
+        new Point(corners[4], corners[5]),
+        new Point(corners[6], corners[7]));
+    return corners[2] - corners[0] > 1
+        && corners[7] - corners[1] > 1
+        && Imgproc.isContourConvex(outline);
   }
 
   protected static Mat drawPolygon(final Mat canvas,
@@ -315,4 +600,421 @@ class OpenCvFeatureMatcher
     OpenCvImgUtils.displayInWindow(VISUALISE_MSG, mr.drawnMatch, Extensions.PNG, comments);
   }
 
+  protected static void visualise(final FeatureMatchingBy params,
+                                  final List<FeatureMatchResult> mrs,
+                                  final Mat trainImg,
+                                  final Mat queryImg)
+  {
+    final List<Rectangle> rects = mrs.stream()
+        .map(mr -> mr.rectangle)
+        .collect(ImmutableList.toImmutableList());
+    final Scalar colour = rects.isEmpty() ? OpenCvImgUtils.RED : OpenCvImgUtils.GREEN;
+    final Mat drawing =
+        OpenCvImgUtils.drawRectangles(OpenCvImgUtils.backToColour(trainImg), rects, colour);
+    final List<String> comments = new ArrayList<>();
+    comments.add(params.toString());
+    for (final FeatureMatchResult mr : mrs)
+    {
+      comments.add("--------------");
+      comments.add(mr.rectangle.toString());
+      comments.add("actualNumOfMatches: " + mr.actualNumOfMatches);
+    }
+    OpenCvImgUtils.displayInWindow(VISUALISE_MSG, drawing, queryImg, Extensions.PNG, comments);
+  }
+
+  /**
+   * Returns the distance metric to compare ORB descriptors with, depending on how many points
+   * produce each element of the descriptor.
+   *
+   * @param wtaK see {@link FeatureMatchingBy#getWtaK()}
+   * @return {@link Core#NORM_HAMMING} or {@link Core#NORM_HAMMING2}
+   */
+  protected static int normType(final int wtaK)
+  {
+    if (wtaK == 2)
+    {
+      return Core.NORM_HAMMING;
+    }
+    else
+    {
+      return Core.NORM_HAMMING2;
+    }
+  }
+
+  /**
+   * Chooses the factor by which both pictures are downscaled before detecting keypoints, if
+   * {@link FeatureMatchingBy#getDownscale()} is set. The training picture is shrunk towards {@link
+   * FeatureMatching#DOWNSCALE_TARGET_SIDE} pixels along its longer side, but never so much that the
+   * query picture's shorter side falls under four times the larger of {@code patchSize} and {@code
+   * edgeThreshold}: ORB ignores a border that wide, and needs a patch that wide around each
+   * keypoint, so a smaller query picture would yield too few keypoints. The factor is rounded up to
+   * a multiple of 0.05, so that locators with similarly sized query pictures can share the training
+   * picture's keypoints.
+   *
+   * @param queryImg the query picture
+   * @param trainImg the training picture
+   * @param params   parameters for the algorithm
+   * @return a factor in {@code (0, 1]}, where 1 means no downscaling
+   */
+  protected static double downscaleFactor(final Mat queryImg,
+                                          final Mat trainImg,
+                                          final FeatureMatchingBy params)
+  {
+    if (!Boolean.TRUE.equals(params.getDownscale()))
+    {
+      return 1.0;
+    }
+    final double minQuerySide = 4.0 * Math.max(params.getPatchSize(), params.getEdgeThreshold());
+    final double byQuery = minQuerySide / Math.min(queryImg.cols(), queryImg.rows());
+    final double byTrain = (double) FeatureMatching.DOWNSCALE_TARGET_SIDE
+        / Math.max(trainImg.cols(), trainImg.rows());
+    final double factor = Math.ceil(Math.max(byQuery, byTrain) * 20.0) / 20.0;
+    return Math.min(1.0, factor);
+  }
+
+  /**
+   * Detects keypoints using an ORB detector, and computes their descriptors.
+   *
+   * @param img       the (filtered) picture
+   * @param nFeatures the maximum number of features to retain
+   * @param params    the ORB parameters
+   * @param scale     the factor to downscale the picture by before detecting keypoints. Keypoints
+   *                  are then mapped back to the picture's own coordinates.
+   * @return the keypoints and descriptors
+   */
+  protected static Features detectAndCompute(final Mat img,
+                                             final int nFeatures,
+                                             final FeatureMatchingBy params,
+                                             final double scale)
+  {
+    final Feature2D detector = ORB.create(nFeatures, params.getScaleFactor(), params.getNlevels(),
+        params.getEdgeThreshold(), params.getFirstLevel(), params.getWtaK(),
+        params.getScoreType(), params.getPatchSize(), params.getFastThreshold());
+    final MatOfKeyPoint keyPoints = new MatOfKeyPoint();
+    final Mat descriptors = new Mat();
+    if (scale < 1.0)
+    {
+      detector.detectAndCompute(SizeUtils.resize(img, scale, null), new Mat(), keyPoints,
+          descriptors);
+      if (!keyPoints.empty())
+      {
+        // Scales each keypoint's 'x', 'y' and 'size', in place, leaving the other fields alone.
+        final Mat fields = keyPoints.reshape(1);
+        final Mat xyAndSize = fields.colRange(0, 3);
+        Core.multiply(xyAndSize, new Scalar(1.0 / scale), xyAndSize);
+      }
+    }
+    else
+    {
+      detector.detectAndCompute(img, new Mat(), keyPoints, descriptors);
+    }
+    return new Features(img, keyPoints, coordinates(keyPoints), descriptors);
+  }
+
+  /**
+   * Filters the training picture and detects its keypoints, unless that has already been done for
+   * the same region of the same screenshot, with the same filters and ORB parameters, in which case
+   * the earlier results are reused. The training picture is usually the larger one by far, and thus
+   * the one whose keypoints are costlier to detect.
+   *
+   * @param trainImg   the (unfiltered) training picture
+   * @param params     parameters for the algorithm
+   * @param scale      see {@link #detectAndCompute(Mat, int, FeatureMatchingBy, double)}
+   * @param frameCache where to look up, or store, the results
+   * @return the filtered picture, its keypoints and descriptors
+   */
+  protected static Features trainFeatures(final Mat trainImg,
+                                          final FeatureMatchingBy params,
+                                          final double scale,
+                                          final FrameCache frameCache)
+  {
+    final List<Object> key = Arrays.asList(ImgRecogMethod.FEATURE_MATCHING, params.getFilters(),
+        params.getTrainImgFeatures(), params.getScaleFactor(), params.getNlevels(),
+        params.getEdgeThreshold(), params.getFirstLevel(), params.getWtaK(),
+        params.getScoreType(), params.getPatchSize(), params.getFastThreshold(), scale);
+    return frameCache.computeIfAbsent(trainImg, key, () -> {
+      final Mat iTrainImg =
+          OpenCvImgUtils.accFilters(params.getFilters()).apply(trainImg.clone());
+      return detectAndCompute(iTrainImg, params.getTrainImgFeatures(), params, scale);
+    });
+  }
+
+  /**
+   * Reads the coordinates of every keypoint at once, without creating a {@link
+   * org.opencv.core.KeyPoint} object for each.
+   *
+   * @param keyPoints the keypoints, whose rows are laid out as {@code x, y, size, angle, response,
+   *                  octave, class_id}
+   * @return the coordinates, as {@code x0, y0, x1, y1...}
+   */
+  protected static float[] coordinates(final MatOfKeyPoint keyPoints)
+  {
+    final int n = (int) keyPoints.total();
+    final int channels = keyPoints.channels();
+    final float[] rows = new float[n * channels];
+    if (n > 0)
+    {
+      keyPoints.get(0, 0, rows);
+    }
+    final float[] coordinates = new float[2 * n];
+    for (int i = 0; i < n; i++)
+    {
+      coordinates[2 * i] = rows[channels * i];
+      coordinates[2 * i + 1] = rows[channels * i + 1];
+    }
+    return coordinates;
+  }
+
+  /**
+   * Keypoints detected in a picture, and their descriptors, row by row. Shared between locators, so
+   * none of these should be modified.
+   */
+  protected static class Features
+  {
+
+    /** The (filtered) picture the keypoints were detected in. */
+    protected final Mat img;
+    protected final MatOfKeyPoint keyPoints;
+    /** The keypoints' coordinates, as returned by {@link #coordinates(MatOfKeyPoint)}. */
+    protected final float[] coordinates;
+    protected final Mat descriptors;
+
+    protected Features(final Mat img,
+                       final MatOfKeyPoint keyPoints,
+                       final float[] coordinates,
+                       final Mat descriptors)
+    {
+      this.img = img;
+      this.keyPoints = keyPoints;
+      this.coordinates = coordinates;
+      this.descriptors = descriptors;
+    }
+
+    /**
+     * Gathers the coordinates of some of the keypoints into a matrix, in one go.
+     *
+     * @param indices the keypoints' indices
+     * @param n       how many of the indices to take, from the start
+     * @return the points, in the same order as the indices
+     */
+    protected MatOfPoint2f points(final int[] indices, final int n)
+    {
+      final float[] data = new float[2 * n];
+      for (int i = 0; i < n; i++)
+      {
+        data[2 * i] = coordinates[2 * indices[i]];
+        data[2 * i + 1] = coordinates[2 * indices[i] + 1];
+      }
+      final MatOfPoint2f points = new MatOfPoint2f();
+      if (n > 0)
+      {
+        points.alloc(n);
+        points.put(0, 0, data);
+      }
+      return points;
+    }
+
+  }
+
+  /**
+   * Pairs of matched descriptors, held in parallel primitive arrays rather than as {@link
+   * org.opencv.core.DMatch} objects, since there may be thousands of them on every lookup. Only the
+   * first {@code size} elements of each array are meaningful.
+   */
+  protected static class Matches
+  {
+
+    protected final int[] queryIdx;
+    protected final int[] trainIdx;
+    protected final float[] distance;
+    protected int size;
+
+    protected Matches(final int capacity)
+    {
+      this(new int[capacity], new int[capacity], new float[capacity], 0);
+    }
+
+    protected Matches(final int[] queryIdx,
+                      final int[] trainIdx,
+                      final float[] distance,
+                      final int size)
+    {
+      this.queryIdx = queryIdx;
+      this.trainIdx = trainIdx;
+      this.distance = distance;
+      this.size = size;
+    }
+
+    /**
+     * Reads every match at once, without creating a {@link org.opencv.core.DMatch} object for
+     * each.
+     *
+     * @param matches the matches, whose rows are laid out as {@code queryIdx, trainIdx, imgIdx,
+     *                distance}
+     * @return the matches, in the same order
+     */
+    protected static Matches of(final MatOfDMatch matches)
+    {
+      final int n = (int) matches.total();
+      final float[] rows = new float[4 * n];
+      if (n > 0)
+      {
+        matches.get(0, 0, rows);
+      }
+      final Matches result = new Matches(n);
+      for (int i = 0; i < n; i++)
+      {
+        result.add((int) rows[4 * i], (int) rows[4 * i + 1], rows[4 * i + 3]);
+      }
+      return result;
+    }
+
+    /** Appends a match. There must be room left for it. */
+    protected void add(final int queryIdx, final int trainIdx, final float distance)
+    {
+      this.queryIdx[size] = queryIdx;
+      this.trainIdx[size] = trainIdx;
+      this.distance[size] = distance;
+      size++;
+    }
+
+    /**
+     * Sorts the matches by ascending distance, in place. Ties keep their relative order.
+     */
+    protected void sortByDistance()
+    {
+      // Distances are never negative, so their bit patterns sort in the same order as their
+      // values. Packing each one with its index into a single 'long' allows sorting primitives.
+      final long[] keys = new long[size];
+      for (int i = 0; i < size; i++)
+      {
+        keys[i] = ((long) Float.floatToIntBits(distance[i]) << 32) | i;
+      }
+      Arrays.sort(keys);
+      final int[] sortedQueryIdx = new int[size];
+      final int[] sortedTrainIdx = new int[size];
+      final float[] sortedDistance = new float[size];
+      for (int i = 0; i < size; i++)
+      {
+        final int j = (int) keys[i];
+        sortedQueryIdx[i] = queryIdx[j];
+        sortedTrainIdx[i] = trainIdx[j];
+        sortedDistance[i] = distance[j];
+      }
+      System.arraycopy(sortedQueryIdx, 0, queryIdx, 0, size);
+      System.arraycopy(sortedTrainIdx, 0, trainIdx, 0, size);
+      System.arraycopy(sortedDistance, 0, distance, 0, size);
+    }
+
+    /**
+     * @param n the maximum number of matches to keep
+     * @return the first {@code n} matches, sharing this instance's arrays
+     */
+    protected Matches limit(final int n)
+    {
+      return n >= size ? this : new Matches(queryIdx, trainIdx, distance, n);
+    }
+
+    /**
+     * @return the same matches, with the query and training indices swapped
+     */
+    protected Matches swapped()
+    {
+      return new Matches(trainIdx, queryIdx, distance, size);
+    }
+
+    /**
+     * @param mask    one element per match, non-zero for the inliers, as filled in by {@link
+     *                Calib3d#findHomography}
+     * @param inliers whether to keep the inliers, or else the outliers
+     * @return the matches kept, in the same order
+     */
+    protected Matches select(final byte[] mask, final boolean inliers)
+    {
+      final Matches selection = new Matches(size);
+      for (int i = 0; i < size; i++)
+      {
+        if ((mask[i] != 0) == inliers)
+        {
+          selection.add(queryIdx[i], trainIdx[i], distance[i]);
+        }
+      }
+      return selection;
+    }
+
+    /**
+     * @return the matches in the form OpenCV's drawing functions expect
+     */
+    protected MatOfDMatch toMat()
+    {
+      final float[] rows = new float[4 * size];
+      for (int i = 0; i < size; i++)
+      {
+        rows[4 * i] = queryIdx[i];
+        rows[4 * i + 1] = trainIdx[i];
+        rows[4 * i + 3] = distance[i];
+      }
+      final MatOfDMatch matches = new MatOfDMatch();
+      if (size > 0)
+      {
+        matches.alloc(size);
+        matches.put(0, 0, rows);
+      }
+      return matches;
+    }
+
+  }
+
+  /**
+   * Holds a FLANN matcher configured with an LSH index, to be cloned before use. The Java bindings
+   * do not expose FLANN's index parameters, so they are loaded from a temporary YAML file, once.
+   */
+  protected static class LshMatcher
+  {
+
+    protected static final DescriptorMatcher PROTOTYPE = create();
+
+    protected LshMatcher()
+    {
+    }
+
+    protected static DescriptorMatcher create()
+    {
+      // FLANN's algorithm 6 is LSH. Types 4 and 9 are 'int' and 'algorithm' respectively.
+      final String yaml = "%YAML:1.0\n---\nformat: 3\nindexParams:\n"
+          + param("algorithm", 9, 6)
+          + param("table_number", 4, FeatureMatching.LSH_TABLE_NUMBER)
+          + param("key_size", 4, FeatureMatching.LSH_KEY_SIZE)
+          + param("multi_probe_level", 4, FeatureMatching.LSH_MULTI_PROBE_LEVEL)
+          + "searchParams:\n"
+          + param("checks", 4, FeatureMatching.FLANN_CHECKS);
+      try
+      {
+        final File file = File.createTempFile("flann_lsh", ".yml");
+        try
+        {
+          Files.write(file.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+          final FlannBasedMatcher matcher = FlannBasedMatcher.create();
+          matcher.read(file.getAbsolutePath());
+          return matcher;
+        }
+        finally
+        {
+          Files.deleteIfExists(file.toPath());
+        }
+      }
+      catch (IOException x)
+      {
+        throw new UncheckedIOException("Could not configure the FLANN LSH matcher.", x);
+      }
+    }
+
+    protected static String param(final String name, final int type, final int value)
+    {
+      return String.format("   -\n      name: %s\n      type: %d\n      value: %d\n",
+          name, type, value);
+    }
+
+  }
+
 }
@@ -8,6 +8,7 @@ import static org.opencv.imgcodecs.Imgcodecs.IMREAD_UNCHANGED;
 import static org.opencv.imgcodecs.Imgcodecs.imdecode;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.rkoyanagui.img_recog.EmptyMatException;
@@ -16,6 +17,7 @@ import com.rkoyanagui.img_recog.FractionalRectangle;
 import com.rkoyanagui.img_recog.ImgRecogBy;
 import com.rkoyanagui.img_recog.ImgRecogElement;
 import com.rkoyanagui.img_recog.ImgRecogEngine;
+import com.rkoyanagui.img_recog.ImgRecogException;
 import com.rkoyanagui.img_recog.ImgUtils;
 import com.rkoyanagui.img_recog.MatchResult;
 import com.rkoyanagui.img_recog.OcrMatchingBy;
@@ -24,9 +26,19 @@ import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.android.HasAndroidDeviceDetails;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
 import org.opencv.core.Rect;
@@ -45,17 +57,34 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
   protected static final String UNSUPPORTED_METHOD = "Unsupported image recognition method: ";
   protected static final String QUERY_IMG_IS_PRESENT = "queryImage::isPresent ? {}";
   protected static final String TRAIN_IMG_IS_PRESENT = "trainingImage::isPresent ? {}";
+  /** How long {@link #close()} waits for filter variants still running. */
+  protected static final long CLOSE_TIMEOUT_SECONDS = 30L;
   protected final boolean debug;
   protected final TesseractOcrMatcher ocrMatcher;
   protected final WebDriver driver;
   protected final JsonParser jsonParser;
+  protected final FrameCache frameCache;
+  /** Runs the filter variants of a locator, see {@link #raceFilterVariants}. */
+  protected final ExecutorService variantExecutor;
 
   public OpenCvImgRecogEngine(final WebDriver driver)
   {
     this.debug = Boolean.getBoolean("img_recog.debug");
+    // OCR models are only loaded when first needed, unless asked to be loaded in the background.
     this.ocrMatcher = new TesseractOcrMatcher();
+    if (Boolean.getBoolean("img_recog.ocr_warm_up"))
+    {
+      this.ocrMatcher.warmUp();
+    }
     this.driver = driver;
     this.jsonParser = new JsonParser();
+    this.frameCache = new FrameCache();
+    // Threads are only started when some locator has filter variants, one per variant, so that a
+    // slow variant never holds up a quicker one, and idle threads are let go after a minute.
+    this.variantExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("img-recog-variant-%d")
+        .setDaemon(true)
+        .build());
   }
 
   @Override
@@ -74,10 +103,9 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
     {
       qImg = null;
     }
-    final Optional<MatOfByte> mbTrainImg = maybeNotEmpty(new MatOfByte(trainingImage));
+    final Optional<Mat> mbTrainImg = frameCache.decode(trainingImage);
     LOG.debug(TRAIN_IMG_IS_PRESENT, mbTrainImg.isPresent());
-    return mbTrainImg.map(matOfByte -> imdecode(matOfByte, IMREAD_UNCHANGED))
-        .flatMap(tImg -> findElement(params, qImg, tImg));
+    return mbTrainImg.flatMap(tImg -> findElement(params, qImg, tImg));
   }
 
   @Override
@@ -87,13 +115,11 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
   {
     final Optional<MatOfByte> mbQueryImg = maybeNotEmpty(new MatOfByte(queryImage));
     LOG.debug(QUERY_IMG_IS_PRESENT, mbQueryImg.isPresent());
-    final Optional<MatOfByte> mbTrainImg = maybeNotEmpty(new MatOfByte(trainingImage));
+    final Optional<Mat> mbTrainImg = frameCache.decode(trainingImage);
     LOG.debug(TRAIN_IMG_IS_PRESENT, mbTrainImg.isPresent());
 
     return mbQueryImg.map(qMatOfByte -> imdecode(qMatOfByte, IMREAD_UNCHANGED))
-        .flatMap(qImg -> mbTrainImg.map(tMatOfByte -> imdecode(tMatOfByte, IMREAD_UNCHANGED))
-            .flatMap(tImg -> findElement(params, qImg, tImg))
-        );
+        .flatMap(qImg -> mbTrainImg.flatMap(tImg -> findElement(params, qImg, tImg)));
   }
 
   @Override
@@ -119,10 +145,9 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
     {
       qImg = null;
     }
-    final Optional<MatOfByte> mbTrainImg = maybeNotEmpty(new MatOfByte(trainingImage));
+    final Optional<Mat> mbTrainImg = frameCache.decode(trainingImage);
     LOG.debug(TRAIN_IMG_IS_PRESENT, mbTrainImg.isPresent());
-    return mbTrainImg.map(matOfByte -> imdecode(matOfByte, IMREAD_UNCHANGED))
-        .map(tImg -> findElements(params, qImg, tImg))
+    return mbTrainImg.map(tImg -> findElements(params, qImg, tImg))
         .orElseGet(() -> ImmutableList.of());
   }
 
@@ -133,13 +158,12 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
   {
     final Optional<MatOfByte> mbQueryImg = maybeNotEmpty(new MatOfByte(queryImage));
     LOG.debug(QUERY_IMG_IS_PRESENT, mbQueryImg.isPresent());
-    final Optional<MatOfByte> mbTrainImg = maybeNotEmpty(new MatOfByte(trainingImage));
+    final Optional<Mat> mbTrainImg = frameCache.decode(trainingImage);
     LOG.debug(TRAIN_IMG_IS_PRESENT, mbTrainImg.isPresent());
 
     return mbQueryImg.map(qMatOfByte -> imdecode(qMatOfByte, IMREAD_UNCHANGED))
-        .flatMap(qImg -> mbTrainImg.map(tMatOfByte -> imdecode(tMatOfByte, IMREAD_UNCHANGED))
-            .map(tImg -> findElements(params, qImg, tImg))
-        ).orElseGet(() -> ImmutableList.of());
+        .flatMap(qImg -> mbTrainImg.map(tImg -> findElements(params, qImg, tImg)))
+        .orElseGet(() -> ImmutableList.of());
   }
 
   @Override
@@ -148,9 +172,56 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
     return ocrMatcher.recognise(img, toAwtRect(rectangle));
   }
 
+  @Override
+  public Optional<String> recognise(final byte[] img, final Rectangle rectangle)
+  {
+    return frameCache.decode(img)
+        .flatMap(mat -> ocrMatcher.recognise(mat, toAwtRect(rectangle)));
+  }
+
+  /**
+   * Detects text, in a single pass, wherever any of several OCR locators would look for it in an
+   * image, e.g., the cutouts of the locators on a page. Locating elements in the same image
+   * afterwards, with any of these locators, then only has to recognise the text.
+   *
+   * @param paramList     the OCR locators to prepare
+   * @param trainingImage the image where the elements will be looked for
+   */
+  public void detectText(final List<OcrMatchingBy> paramList, final byte[] trainingImage)
+  {
+    final Optional<Mat> mbTrainImg = frameCache.decode(trainingImage);
+    LOG.debug(TRAIN_IMG_IS_PRESENT, mbTrainImg.isPresent());
+    mbTrainImg.ifPresent(tImg -> {
+      final Size tImgSize = tImg.size();
+      final List<Mat> cutoutSrcImgs = new ArrayList<>(paramList.size());
+      for (final OcrMatchingBy params : paramList)
+      {
+        OcrMatchingBy.verifyOcrParams(params);
+        cutoutSrcImgs.add(Optional.ofNullable(params.getCutout())
+            .map(cutout -> OpenCvImgUtils.proportionalToAbsoluteRect(tImgSize, cutout))
+            .map(rect -> OpenCvImgUtils.cutout(tImg, rect))
+            .orElse(tImg));
+      }
+      ocrMatcher.detectAll(paramList, cutoutSrcImgs, frameCache);
+    });
+  }
+
   protected Optional<ImgRecogElement> findElement(final ImgRecogBy params,
                                                   final Mat queryImage,
                                                   final Mat trainingImage)
+  {
+    final List<ImgRecogBy> variants = filterVariants(params);
+    if (variants.size() == 1)
+    {
+      return findElementOnce(params, queryImage, trainingImage);
+    }
+    return raceFilterVariants(variants, v -> findElementOnce(v, queryImage, trainingImage),
+        Optional::isPresent, Optional.empty());
+  }
+
+  protected Optional<ImgRecogElement> findElementOnce(final ImgRecogBy params,
+                                                      final Mat queryImage,
+                                                      final Mat trainingImage)
   {
     final Size tImgSize = trainingImage.size();
     final Optional<Rect> optCutoutRect = Optional.ofNullable(params.getCutout())
@@ -168,11 +239,11 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
       case FEATURE_MATCHING:
         FeatureMatchingBy.verifyFeatureMatchingParams(params);
         optMr = OpenCvFeatureMatcher.matchFeatures(queryImage, cutoutSrcImg,
-            (FeatureMatchingBy) params, debug);
+            (FeatureMatchingBy) params, frameCache, debug);
         break;
       case OCR:
         OcrMatchingBy.verifyOcrParams(params);
-        optMr = ocrMatcher.locateText((OcrMatchingBy) params, cutoutSrcImg, debug);
+        optMr = ocrMatcher.locateText((OcrMatchingBy) params, cutoutSrcImg, frameCache, debug);
         break;
       default:
         throw new UnsupportedOperationException(UNSUPPORTED_METHOD + params.getMethod());
@@ -185,6 +256,19 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
   protected List<ImgRecogElement> findElements(final ImgRecogBy params,
                                                final Mat queryImage,
                                                final Mat trainingImage)
+  {
+    final List<ImgRecogBy> variants = filterVariants(params);
+    if (variants.size() == 1)
+    {
+      return findElementsOnce(params, queryImage, trainingImage);
+    }
+    return raceFilterVariants(variants, v -> findElementsOnce(v, queryImage, trainingImage),
+        elements -> !elements.isEmpty(), ImmutableList.of());
+  }
+
+  protected List<ImgRecogElement> findElementsOnce(final ImgRecogBy params,
+                                                   final Mat queryImage,
+                                                   final Mat trainingImage)
   {
     final Size tImgSize = trainingImage.size();
     final Optional<Rect> optCutoutRect = Optional.ofNullable(params.getCutout())
@@ -200,13 +284,14 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
             (TemplateMatchingBy) params, debug);
         break;
       case FEATURE_MATCHING:
-        throw new UnsupportedOperationException("The 'feature matching' image recognition method, "
-            + "called by, for instance, the annotations 'AndroidImageFeatureFindBy' and "
-            + "'iOSImageFeatureFindBy', cannot be used to find lists of elements. It can only be "
-            + "used to find single elements.");
+        FeatureMatchingBy.verifyFeatureMatchingParams(params);
+        mrs = OpenCvFeatureMatcher.matchAllFeatures(queryImage, cutoutSrcImg,
+            (FeatureMatchingBy) params, frameCache, debug);
+        break;
       case OCR:
         OcrMatchingBy.verifyOcrParams(params);
-        mrs = ocrMatcher.locateTexts((OcrMatchingBy) params, cutoutSrcImg, debug);
+        mrs = ocrMatcher.locateTexts((OcrMatchingBy) params, cutoutSrcImg, frameCache,
+            debug);
         break;
       default:
         throw new UnsupportedOperationException(UNSUPPORTED_METHOD + params.getMethod());
@@ -218,6 +303,117 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
         .collect(ImmutableList.toImmutableList());
   }
 
+  /**
+   * @return the locator itself, with its own filters, followed by a copy of it for each of its
+   * filter variants, if it has any, with the variant in place of its filters, or, with template
+   * matching, of its pre-resizing filters
+   */
+  protected static List<ImgRecogBy> filterVariants(final ImgRecogBy params)
+  {
+    final ImmutableList.Builder<ImgRecogBy> variants = ImmutableList.builder();
+    variants.add(params);
+    if (params instanceof TemplateMatchingBy)
+    {
+      final TemplateMatchingBy tParams = (TemplateMatchingBy) params;
+      if (nonNull(tParams.getFilterVariants()))
+      {
+        for (final ImageFilter[] filters : tParams.getFilterVariants())
+        {
+          variants.add(TemplateMatchingBy.builder().clone(tParams).preResizingFilters(filters)
+              .filterVariants(null).build());
+        }
+      }
+    }
+    else if (params instanceof OcrMatchingBy)
+    {
+      final OcrMatchingBy oParams = (OcrMatchingBy) params;
+      if (nonNull(oParams.getFilterVariants()))
+      {
+        for (final ImageFilter[] filters : oParams.getFilterVariants())
+        {
+          variants.add(OcrMatchingBy.builder().clone(oParams).filters(filters)
+              .filterVariants(null).build());
+        }
+      }
+    }
+    else if (params instanceof FeatureMatchingBy)
+    {
+      final FeatureMatchingBy fParams = (FeatureMatchingBy) params;
+      if (nonNull(fParams.getFilterVariants()))
+      {
+        for (final ImageFilter[] filters : fParams.getFilterVariants())
+        {
+          variants.add(FeatureMatchingBy.builder().clone(fParams).filters(filters)
+              .filterVariants(null).build());
+        }
+      }
+    }
+    return variants.build();
+  }
+
+  /**
+   * Looks for an element with several variants of the same locator at the same time, each on a
+   * thread of its own, and returns the result of the first variant to find it. Variants that have
+   * not started yet are then cancelled, but those under way are not interrupted, as they may be in
+   * the middle of native OpenCV or Tesseract calls reading memory that only they may release: they
+   * run to the end in the background, and their results are dropped. Results already cached by the
+   * variants, e.g., detected text, stay cached for the next lookup.
+   *
+   * @param variants the variants of the locator
+   * @param find     looks for the element with a single variant
+   * @param isFound  whether a variant's result means the element was found
+   * @param notFound the result if no variant finds the element
+   * @param <T>      the type of the result
+   * @return the result of the first variant to find the element, or {@code notFound}
+   */
+  protected <T> T raceFilterVariants(final List<ImgRecogBy> variants,
+                                     final Function<ImgRecogBy, T> find,
+                                     final Predicate<T> isFound,
+                                     final T notFound)
+  {
+    final CompletionService<T> completionService =
+        new ExecutorCompletionService<>(variantExecutor);
+    final List<Future<T>> futures = new ArrayList<>(variants.size());
+    for (final ImgRecogBy variant : variants)
+    {
+      futures.add(completionService.submit(() -> find.apply(variant)));
+    }
+    try
+    {
+      for (int i = 0; i < variants.size(); i++)
+      {
+        final T result = completionService.take().get();
+        if (isFound.test(result))
+        {
+          return result;
+        }
+      }
+      return notFound;
+    }
+    catch (InterruptedException x)
+    {
+      Thread.currentThread().interrupt();
+      return notFound;
+    }
+    catch (ExecutionException x)
+    {
+      if (x.getCause() instanceof RuntimeException)
+      {
+        throw (RuntimeException) x.getCause();
+      }
+      if (x.getCause() instanceof Error)
+      {
+        throw (Error) x.getCause();
+      }
+      throw new ImgRecogException(x.getCause());
+    }
+    finally
+    {
+      // Never interrupting a variant under way, see above.
+      futures.forEach(f -> f.cancel(false));
+    }
+  }
+
   /**
    * Looks for an element inside another, usually bigger, picture, usually representing some sort of
    * video screen. Tries every locator in the locator list in succession. The match is only
@@ -468,9 +664,33 @@ public class OpenCvImgRecogEngine implements ImgRecogEngine, Closeable
     return mr.withRectangle(correctedRect).withSrcImgDimension(trainImgDimension);
   }
 
+  /**
+   * Releases the OCR models, once every filter variant still running in the background, see {@link
+   * #raceFilterVariants}, has finished. Variants are not interrupted, as they may be in the middle
+   * of native calls using those models. If they have not finished within {@link
+   * #CLOSE_TIMEOUT_SECONDS}, then the models are left loaded rather than released under them.
+   */
   @Override
   public void close()
   {
+    this.variantExecutor.shutdown();
+    boolean isTerminated = false;
+    try
+    {
+      isTerminated =
+          this.variantExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException x)
+    {
+      Thread.currentThread().interrupt();
+    }
+    this.frameCache.clear();
+    if (!isTerminated)
+    {
+      LOG.warn("Filter variants still running after {} s, OCR models not released",
+          CLOSE_TIMEOUT_SECONDS);
+      return;
+    }
     if (nonNull(this.ocrMatcher))
     {
       this.ocrMatcher.close();
@@ -1,24 +1,36 @@
 package com.rkoyanagui.img_recog.impl;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
+import com.rkoyanagui.utils.Pair;
+import com.sun.jna.Pointer;
 import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import net.sourceforge.tess4j.Tesseract1;
-import org.apache.commons.lang3.reflect.FieldUtils;
+import net.sourceforge.tess4j.Word;
+import net.sourceforge.tess4j.util.ImageIOHelper;
 
 public class Tesseract2 extends Tesseract1
 {
 
   protected boolean hasBeenInit;
+  /** What the handle was last set to, see {@link #use(TesseractProfile)}. */
+  protected String charWhitelist;
+  protected int pageSegMode;
+  protected int dpi;
 
   /**
    * Initialises the Tesseract native API, pointing it to the language and data file of your choice.
    * Check language support at <a href="https://github.com/tesseract-ocr/tessdoc">tessdoc</a>.
    * Engine mode is set to LSTM neural net only. Page segmentation mode is set to 6 (single uniform
-   * block of text). For choosing more than one language, use the <b>+</b> symbol, e.g.,
-   * <i>por+eng</i>.
+   * block of text), until {@link #use(TesseractProfile)} says otherwise. For choosing more than one
+   * language, use the <b>+</b> symbol, e.g., <i>por+eng</i>.
    *
    * @param language the language of trained data
    * @param datapath the path to the trained data file
@@ -47,6 +59,9 @@ public class Tesseract2 extends Tesseract1
     // 13    Raw line. Treat the image as a single text line,
     // bypassing hacks that are Tesseract-specific.
     setPageSegMode(OcrMatching.PAGE_SEGMENTATION_MODE);
+    charWhitelist = "";
+    pageSegMode = OcrMatching.PAGE_SEGMENTATION_MODE;
+    dpi = OcrMatching.DPI;
     hasBeenInit = false;
     // Calling init() only once, as opposed to every time OCR is done, improves performance.
     init();
@@ -90,32 +105,181 @@ public class Tesseract2 extends Tesseract1
     super.dispose();
   }
 
-  // Lots of PNG images don't have DPI metadata. That causes Leptonica (Tesseract's internal utility
-  // for some image processing tasks) to log a warning every time such an image is read. That is why
-  // this method is overridden. It now sets DPI to 70 if was found initially to be 0.
-  @Override
-  protected void setImage(int xsize, int ysize, ByteBuffer buf, Rectangle rect, int bpp)
+  /**
+   * Sets the handle up to recognise text as the given profile says, apart from its language, which
+   * is the one the handle was created with. Settings already in place are left alone, so switching
+   * back and forth between a few profiles costs next to nothing.
+   *
+   * @param profile the character whitelist, page segmentation mode and resolution to use
+   */
+  public void use(final TesseractProfile profile)
   {
-    super.setImage(xsize, ysize, buf, rect, bpp);
-    TessBaseAPI handle = null;
-    int res = 0;
-    try
+    final TessBaseAPI handle = getHandle();
+    if (!charWhitelist.equals(profile.charWhitelist))
+    {
+      TessBaseAPISetVariable(handle, "tessedit_char_whitelist", profile.charWhitelist);
+      charWhitelist = profile.charWhitelist;
+    }
+    if (pageSegMode != profile.pageSegMode)
     {
-      handle = (TessBaseAPI) FieldUtils.readField(this, "handle", true);
+      TessBaseAPISetPageSegMode(handle, profile.pageSegMode);
+      pageSegMode = profile.pageSegMode;
     }
-    catch (IllegalAccessException e)
+    dpi = profile.dpi;
+  }
+
+  /**
+   * Recognises the text inside each of several areas of the same image. The image is handed over
+   * to Tesseract only once, and then each area is selected in turn, whereas calling
+   * {@link #doOCR(List, Rectangle)} once per area would copy the whole image every time.
+   *
+   * @param image      the image to be OCR'ed
+   * @param rectangles the areas of the image to be OCR'ed
+   * @return for each area, in the same order, the text recognised (or {@code null}, if recognition
+   * failed) and Tesseract's mean confidence in it, from 0 to 100
+   */
+  public List<Pair<String, Integer>> doOCR(final RenderedImage image,
+                                           final List<Rectangle> rectangles)
+  {
+    return doOCR(ImageIOHelper.getImageByteBuffer(image), image.getWidth(), image.getHeight(),
+        image.getColorModel().getPixelSize(), rectangles);
+  }
+
+  /**
+   * Recognises the text inside each of several areas of the same image, given as raw pixel data.
+   * The image is handed over to Tesseract only once, and then each area is selected in turn.
+   *
+   * @param pixels       the image's pixels, row after row, with no padding between rows, and
+   *                     channels in RGB(A) order
+   * @param width        the image's width
+   * @param height       the image's height
+   * @param bitsPerPixel 8 for grey, 24 for RGB, or 32 for RGBA images
+   * @param rectangles   the areas of the image to be OCR'ed
+   * @return for each area, in the same order, the text recognised (or {@code null}, if recognition
+   * failed) and Tesseract's mean confidence in it, from 0 to 100
+   */
+  public List<Pair<String, Integer>> doOCR(final ByteBuffer pixels,
+                                           final int width,
+                                           final int height,
+                                           final int bitsPerPixel,
+                                           final List<Rectangle> rectangles)
+  {
+    setImage(width, height, pixels, null, bitsPerPixel);
+    final TessBaseAPI handle = getHandle();
+    final List<Pair<String, Integer>> results = new ArrayList<>(rectangles.size());
+    for (final Rectangle rect : rectangles)
     {
-      // fall through
+      if (rect.isEmpty())
+      {
+        // Tesseract would otherwise read the whole image.
+        results.add(new Pair<>("", 0));
+        continue;
+      }
+      TessBaseAPISetRectangle(handle, rect.x, rect.y, rect.width, rect.height);
+      // Getting the text is what triggers recognition, so the confidence can only be read after.
+      final Pointer textPtr = TessBaseAPIGetUTF8Text(handle);
+      final int confidence = TessBaseAPIMeanTextConf(handle);
+      String text = null;
+      if (nonNull(textPtr))
+      {
+        text = textPtr.getString(0, "UTF-8");
+        TessDeleteText(textPtr);
+      }
+      results.add(new Pair<>(text, confidence));
     }
-    if (nonNull(handle))
+    return results;
+  }
+
+  /**
+   * Finds and recognises the text in a whole image, given as raw pixel data, in a single pass, and
+   * then iterates over the results at the given level, e.g., word by word.
+   *
+   * @param pixels       the image's pixels, row after row, with no padding between rows, and
+   *                     channels in RGB(A) order
+   * @param width        the image's width
+   * @param height       the image's height
+   * @param bitsPerPixel 8 for grey, 24 for RGB, or 32 for RGBA images
+   * @param pageSegMode  the page segmentation mode for this pass only, e.g., 11 for sparse text
+   * @param level        the level of the results, e.g., {@link PageIteratorLevel#WORD}
+   * @return the text recognised at each result, Tesseract's confidence in it, from 0 to 100, and
+   * its bounding box, in Tesseract's reading order. Results without any text are left out. If
+   * recognition fails, then there are no results at all.
+   */
+  public List<Word> getWords(final ByteBuffer pixels,
+                             final int width,
+                             final int height,
+                             final int bitsPerPixel,
+                             final int pageSegMode,
+                             final PageIteratorLevel level)
+  {
+    setImage(width, height, pixels, null, bitsPerPixel);
+    final TessBaseAPI handle = getHandle();
+    final List<Word> words = new ArrayList<>();
+    TessBaseAPISetPageSegMode(handle, pageSegMode);
+    try
     {
-      res = TessBaseAPIGetSourceYResolution(handle);
+      // Anything other than zero means recognition failed, and there are no results to iterate.
+      if (TessBaseAPIRecognize(handle, null) != 0)
+      {
+        return words;
+      }
+      final TessResultIterator ri = TessBaseAPIGetIterator(handle);
+      if (isNull(ri))
+      {
+        return words;
+      }
+      try
+      {
+        final TessPageIterator pi = TessResultIteratorGetPageIterator(ri);
+        final IntBuffer left = IntBuffer.allocate(1);
+        final IntBuffer top = IntBuffer.allocate(1);
+        final IntBuffer right = IntBuffer.allocate(1);
+        final IntBuffer bottom = IntBuffer.allocate(1);
+        TessPageIteratorBegin(pi);
+        do
+        {
+          final Pointer textPtr = TessResultIteratorGetUTF8Text(ri, level.level);
+          if (isNull(textPtr))
+          {
+            continue;
+          }
+          final String text;
+          try
+          {
+            text = textPtr.getString(0, "UTF-8");
+          }
+          finally
+          {
+            TessDeleteText(textPtr);
+          }
+          final float confidence = TessResultIteratorConfidence(ri, level.level);
+          TessPageIteratorBoundingBox(pi, level.level, left, top, right, bottom);
+          words.add(new Word(text, confidence, new Rectangle(left.get(0), top.get(0),
+              right.get(0) - left.get(0), bottom.get(0) - top.get(0))));
+        }
+        while (TessPageIteratorNext(pi, level.level) == TRUE);
+      }
+      finally
+      {
+        TessResultIteratorDelete(ri);
+      }
     }
-    if (res < 70)
+    finally
     {
-      res = 70;
+      // The handle goes on being used to recognise one area at a time.
+      TessBaseAPISetPageSegMode(handle, this.pageSegMode);
     }
-    TessBaseAPISetSourceResolution(handle, res);
+    return words;
+  }
+
+  // Raw pixel data has no DPI metadata. That causes Leptonica (Tesseract's internal utility for
+  // some image processing tasks) to log a warning every time such an image is read. That is why
+  // this method is overridden. It now sets DPI to the current profile's, 70 by default.
+  @Override
+  protected void setImage(int xsize, int ysize, ByteBuffer buf, Rectangle rect, int bpp)
+  {
+    super.setImage(xsize, ysize, buf, rect, bpp);
+    TessBaseAPISetSourceResolution(getHandle(), dpi);
   }
 
 }
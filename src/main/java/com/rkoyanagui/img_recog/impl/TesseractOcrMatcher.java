@@ -1,33 +1,42 @@
 package com.rkoyanagui.img_recog.impl;
 
 import static com.rkoyanagui.img_recog.impl.OpenCvImgUtils.toBufferedImage;
-import static com.rkoyanagui.img_recog.impl.OpenCvImgUtils.toIIOImageList;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.rkoyanagui.img_recog.Extensions;
+import com.rkoyanagui.img_recog.ImgRecogMethod;
 import com.rkoyanagui.img_recog.OcrMatchingBy;
 import com.rkoyanagui.img_recog.Padding;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
 import com.rkoyanagui.utils.Pair;
+import com.sun.jna.Pointer;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
-import javax.imageio.IIOImage;
-import net.sourceforge.tess4j.ITesseract;
 import net.sourceforge.tess4j.TesseractException;
 import net.sourceforge.tess4j.Word;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfFloat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.MatOfRotatedRect;
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
@@ -35,7 +44,7 @@ import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.dnn.Dnn;
 import org.opencv.dnn.Net;
-import org.opencv.utils.Converters;
+import org.opencv.imgproc.Imgproc;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.Rectangle;
 import org.slf4j.Logger;
@@ -51,16 +60,152 @@ public class TesseractOcrMatcher implements Closeable
   protected static final String TESS_PATH = "tessdata/";
   protected static final String EAST_PATH = "tessdata/frozen_east_text_detection.pb";
 
-  protected final ITesseract tesseract;
-  protected final Net net;
+  protected final String language;
+  protected final String tessPath;
+  protected final String eastPath;
+  protected final int workers;
+  protected final Object tesseractsLock = new Object();
+  protected final Object netLock = new Object();
+  protected final Object glyphSetsLock = new Object();
+  /** Each language's handles, created on first use, see {@link #tesseracts(String)}. */
+  protected final Map<String, TesseractPool> tesseracts = new ConcurrentHashMap<>();
+  /** Created on first use, see {@link #net()}. */
+  protected volatile Net net;
+  /** Each directory's glyph set, read on first use, see {@link #glyphSet(String)}. */
+  protected final Map<String, GlyphSet> glyphSets = new ConcurrentHashMap<>();
+  protected volatile boolean closed;
 
+  /**
+   * Reads the configuration, but loads neither the Tesseract nor the EAST models. Each is loaded
+   * when first needed, or ahead of time by {@link #warmUp()}, so that users of the other image
+   * recognition methods never pay for them.
+   */
   public TesseractOcrMatcher()
   {
-    final String language = System.getProperty("tesseract.language", LANGUAGE);
-    final String tessPath = System.getProperty("tesseract.datapath", TESS_PATH);
-    final String eastPath = System.getProperty("east.datapath", EAST_PATH);
-    this.tesseract = new Tesseract2(language, tessPath);
-    this.net = Dnn.readNetFromTensorflow(eastPath);
+    this.language = System.getProperty("tesseract.language", LANGUAGE);
+    this.tessPath = System.getProperty("tesseract.datapath", TESS_PATH);
+    this.eastPath = System.getProperty("east.datapath", EAST_PATH);
+    this.workers = Integer.getInteger("tesseract.workers",
+        Math.min(Runtime.getRuntime().availableProcessors(), OcrMatching.MAX_TESSERACT_WORKERS));
+  }
+
+  /**
+   * Starts loading the Tesseract and the EAST models on background threads, each on its own, and
+   * returns immediately. Whatever OCR is done next only waits for the models it needs, and only for
+   * as long as they are still loading.
+   */
+  public void warmUp()
+  {
+    final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+        .setNameFormat("ocr-warm-up-%d")
+        .setDaemon(true)
+        .build();
+    threadFactory.newThread(() -> warmUp(() -> tesseracts(language))).start();
+    threadFactory.newThread(() -> warmUp(this::net)).start();
+  }
+
+  protected static void warmUp(final Supplier<?> model)
+  {
+    try
+    {
+      model.get();
+    }
+    catch (RuntimeException | LinkageError x)
+    {
+      // E.g., a missing model file or native library. The first OCR call will try again, and fail
+      // for good.
+      LOG.warn("Could not load an OCR model ahead of time", x);
+    }
+  }
+
+  /**
+   * @param language the language of trained data
+   * @return the Tesseract handles for the given language, shared with every other matcher of the
+   * same configuration in this JVM through the {@link ModelRegistry}, loading the trained data if
+   * no one holds it yet
+   */
+  protected TesseractPool tesseracts(final String language)
+  {
+    TesseractPool pool = tesseracts.get(language);
+    if (isNull(pool))
+    {
+      synchronized (tesseractsLock)
+      {
+        verifyNotClosed();
+        pool = tesseracts.get(language);
+        if (isNull(pool))
+        {
+          pool = ModelRegistry.acquireTesseracts(language, tessPath, workers);
+          tesseracts.put(language, pool);
+        }
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * @param path the glyph set's directory
+   * @return the glyph set in the given directory, shared with every other matcher in this JVM
+   * through the {@link ModelRegistry}, reading it if no one holds it yet
+   */
+  protected GlyphSet glyphSet(final String path)
+  {
+    GlyphSet glyphSet = glyphSets.get(path);
+    if (isNull(glyphSet))
+    {
+      synchronized (glyphSetsLock)
+      {
+        verifyNotClosed();
+        glyphSet = glyphSets.get(path);
+        if (isNull(glyphSet))
+        {
+          glyphSet = ModelRegistry.acquireGlyphSet(path);
+          glyphSets.put(path, glyphSet);
+        }
+      }
+    }
+    return glyphSet;
+  }
+
+  /**
+   * @return how Tesseract is to recognise text for the given parameters, falling back on the
+   * configured language if they choose none
+   */
+  protected TesseractProfile profile(final OcrMatchingBy params)
+  {
+    return TesseractProfile.of(params, language);
+  }
+
+  /**
+   * @return the EAST network, shared with every other matcher reading the same file in this JVM
+   * through the {@link ModelRegistry}, loading it if no one holds it yet. Forward passes must be
+   * synchronised on it.
+   */
+  protected Net net()
+  {
+    Net eastNet = net;
+    if (isNull(eastNet))
+    {
+      synchronized (netLock)
+      {
+        verifyNotClosed();
+        eastNet = net;
+        if (isNull(eastNet))
+        {
+          eastNet = ModelRegistry.acquireEast(eastPath);
+          net = eastNet;
+        }
+      }
+    }
+    return eastNet;
+  }
+
+  protected void verifyNotClosed()
+  {
+    if (closed)
+    {
+      throw new IllegalStateException("This OCR matcher has already been closed");
+    }
   }
 
   /**
@@ -78,39 +223,81 @@ public class TesseractOcrMatcher implements Closeable
                                              final Mat img,
                                              final boolean isDebugMode)
   {
-    final Predicate<String> searchPredicate =
-        params.getOcrTest().predicateFactory.apply(params.getSearchTerm());
-
-    @SuppressWarnings("squid:S4276") final Function<String, String> cleanUp =
-        composeTextCleaner(params.getCleanUp());
+    return locateText(params, img, new FrameCache(), isDebugMode);
+  }
 
-    final Mat filteredImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(img);
+  /**
+   * Performs text detection using <a href="https://github.com/argman/EAST">EAST</a>, and then
+   * performs text recognition using <a href="https://tesseract-ocr.github.io/">Tesseract</a>,
+   * unless that has already been done for the same region of the same screenshot, with the same
+   * filters and detection parameters.
+   *
+   * @param params      set of parameters for the OCR engine, and definition of what to consider as
+   *                    a successful match
+   * @param img         the image to be OCR'ed
+   * @param frameCache  where to look up, or store, the words recognised in the image
+   * @param isDebugMode if "debug" mode is enabled, then a window will pop up, displaying the search
+   *                    results
+   * @return maybe a successful match, maybe nothing
+   */
+  public Optional<OcrMatchResult> locateText(final OcrMatchingBy params,
+                                             final Mat img,
+                                             final FrameCache frameCache,
+                                             final boolean isDebugMode)
+  {
+    Optional<OcrMatchResult> match = Optional.empty();
+    for (final TextDetector detector : textDetectors(params))
+    {
+      match = locateText(params, detector, img, frameCache, isDebugMode);
+      if (match.isPresent())
+      {
+        break;
+      }
+    }
+    return match;
+  }
 
-    final float scoreThresh = params.getMinScore();
-    final float nmsThresh = params.getNms();
-    final float iouThresh = params.getIou();
-    final Padding padding = params.getPadding();
+  /**
+   * Like {@link #locateText(OcrMatchingBy, Mat, FrameCache, boolean)}, with a single text detector.
+   *
+   * @param params      set of parameters for the OCR engine, and definition of what to consider as
+   *                    a successful match
+   * @param detector    how to find the areas of the image where there may be text
+   * @param img         the image to be OCR'ed
+   * @param frameCache  where to look up, or store, the words recognised in the image
+   * @param isDebugMode if "debug" mode is enabled, then a window will pop up, displaying the search
+   *                    results
+   * @return maybe a successful match, maybe nothing
+   */
+  protected Optional<OcrMatchResult> locateText(final OcrMatchingBy params,
+                                                final TextDetector detector,
+                                                final Mat img,
+                                                final FrameCache frameCache,
+                                                final boolean isDebugMode)
+  {
+    final OcrWordIndex index = detectAll(params, detector, img, frameCache);
+    if (Boolean.TRUE.equals(params.getEarlyStop()))
+    {
+      return locateTextEarly(params, index, isDebugMode);
+    }
 
-    final List<Word> words = recognise(
-        toBufferedImage(filteredImg),
-        detect(filteredImg, scoreThresh, nmsThresh, iouThresh, padding)
-    );
+    final int[] boxes = index.plausible(params);
+    recogniseBoxes(params, index, boxes);
 
-    final Optional<Word> bestMatch = words.stream()
-        .filter(w -> searchPredicate.test(cleanUp.apply(w.getText())))
+    final Optional<Word> bestMatch = index.find(params, boxes).stream()
         .max(Comparator.comparing(Word::getConfidence));
 
     if (bestMatch.isPresent())
     {
       if (isDebugMode)
       {
-        showResults(params, bestMatch.get(), filteredImg, true);
+        showResults(params, bestMatch.get(), index.img.clone(), true);
       }
-      return Optional.of(toMatchResult(bestMatch.get(), filteredImg, params));
+      return Optional.of(toMatchResult(bestMatch.get(), index.img, params));
     }
     else if (isDebugMode)
     {
-      showResults(params, words, filteredImg, false);
+      showResults(params, index.words(), index.img.clone(), false);
     }
     return Optional.empty();
   }
@@ -130,44 +317,360 @@ public class TesseractOcrMatcher implements Closeable
                                           final Mat img,
                                           final boolean isDebugMode)
   {
-    final Predicate<String> searchPredicate =
-        params.getOcrTest().predicateFactory.apply(params.getSearchTerm());
-
-    @SuppressWarnings("squid:S4276") final Function<String, String> cleanUp =
-        composeTextCleaner(params.getCleanUp());
+    return locateTexts(params, img, new FrameCache(), isDebugMode);
+  }
 
-    final Mat filteredImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(img);
+  /**
+   * Performs text detection using <a href="https://github.com/argman/EAST">EAST</a>, and then
+   * performs text recognition using <a href="https://tesseract-ocr.github.io/">Tesseract</a>,
+   * unless that has already been done for the same region of the same screenshot, with the same
+   * filters and detection parameters.
+   *
+   * @param params      set of parameters for the OCR engine, and definition of what to consider as
+   *                    a successful match
+   * @param img         the image to be OCR'ed
+   * @param frameCache  where to look up, or store, the words recognised in the image
+   * @param isDebugMode if "debug" mode is enabled, then a window will pop up, displaying the search
+   *                    results
+   * @return a list of successful matches, or an empty list
+   */
+  public List<OcrMatchResult> locateTexts(final OcrMatchingBy params,
+                                          final Mat img,
+                                          final FrameCache frameCache,
+                                          final boolean isDebugMode)
+  {
+    List<OcrMatchResult> matches = ImmutableList.of();
+    for (final TextDetector detector : textDetectors(params))
+    {
+      matches = locateTexts(params, detector, img, frameCache, isDebugMode);
+      if (!matches.isEmpty())
+      {
+        break;
+      }
+    }
+    return matches;
+  }
 
-    final float scoreThresh = params.getMinScore();
-    final float nmsThresh = params.getNms();
-    final float iouThresh = params.getIou();
-    final Padding padding = params.getPadding();
-    final List<Word> words = recognise(
-        toBufferedImage(filteredImg),
-        detect(filteredImg, scoreThresh, nmsThresh, iouThresh, padding)
-    );
+  /**
+   * Like {@link #locateTexts(OcrMatchingBy, Mat, FrameCache, boolean)}, with a single text
+   * detector.
+   *
+   * @param params      set of parameters for the OCR engine, and definition of what to consider as
+   *                    a successful match
+   * @param detector    how to find the areas of the image where there may be text
+   * @param img         the image to be OCR'ed
+   * @param frameCache  where to look up, or store, the words recognised in the image
+   * @param isDebugMode if "debug" mode is enabled, then a window will pop up, displaying the search
+   *                    results
+   * @return a list of successful matches, or an empty list
+   */
+  protected List<OcrMatchResult> locateTexts(final OcrMatchingBy params,
+                                             final TextDetector detector,
+                                             final Mat img,
+                                             final FrameCache frameCache,
+                                             final boolean isDebugMode)
+  {
+    final OcrWordIndex index = detectAll(params, detector, img, frameCache);
+    final int[] boxes = index.plausible(params);
+    recogniseBoxes(params, index, boxes);
 
-    final List<Word> filteredWords = words.stream()
-        .filter(w -> searchPredicate.test(cleanUp.apply(w.getText())))
-        .collect(ImmutableList.toImmutableList());
+    final List<Word> filteredWords = index.find(params, boxes);
 
     if (!filteredWords.isEmpty())
     {
       if (isDebugMode)
       {
-        showResults(params, filteredWords, filteredImg, true);
+        showResults(params, filteredWords, index.img.clone(), true);
       }
       return filteredWords.stream()
-          .map(w -> toMatchResult(w, filteredImg, params))
+          .map(w -> toMatchResult(w, index.img, params))
           .collect(ImmutableList.toImmutableList());
     }
     else if (isDebugMode)
     {
-      showResults(params, words, filteredImg, false);
+      showResults(params, index.words(), index.img.clone(), false);
     }
     return ImmutableList.of();
   }
 
+  /**
+   * Filters the image and detects text in it, unless that has already been done for the same
+   * region of the same screenshot, with the same filters and detection parameters, in which case
+   * the earlier results, including any words recognised since, are reused. The search term, test
+   * and clean-ups play no part in this, so locators looking for different words share the same
+   * results.
+   *
+   * @param params     parameters for the OCR engine
+   * @param detector   how to find the areas of the image where there may be text
+   * @param img        the (unfiltered) image to be OCR'ed
+   * @param frameCache where to look up, or store, the results
+   * @return the filtered image, the boxes where text was detected, and the words recognised so far
+   */
+  protected OcrWordIndex detectAll(final OcrMatchingBy params,
+                                   final TextDetector detector,
+                                   final Mat img,
+                                   final FrameCache frameCache)
+  {
+    final TesseractProfile profile = profile(params);
+    return frameCache.computeIfAbsent(img, wordIndexKey(params, detector), () -> {
+      final Mat filteredImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(img);
+      final List<Pair<Float, java.awt.Rectangle>> boxes;
+      switch (detector)
+      {
+        case TESSERACT:
+          return readSparseText(filteredImg, profile);
+        case GRADIENT:
+          boxes = TextProposals.gradient(filteredImg, params.getPadding(), params.getIou());
+          break;
+        case MSER:
+          boxes = TextProposals.mser(filteredImg, params.getPadding(), params.getIou());
+          break;
+        default:
+          boxes = detect(filteredImg, params.getMinScore(), params.getNms(), params.getIou(),
+              params.getPadding(), minInputPixels(params), maxInputPixels(params));
+      }
+      return new OcrWordIndex(filteredImg, boxes);
+    });
+  }
+
+  /**
+   * Finds and recognises the text in an image with a single Tesseract pass, in sparse text page
+   * segmentation mode, rather than detecting text first and then recognising each box.
+   *
+   * @param img     the filtered image to be OCR'ed
+   * @param profile how to recognise the text, apart from its page segmentation mode
+   * @return the words Tesseract read, with their bounding boxes, every one of them recognised. Each
+   * word's score is Tesseract's confidence in it, scaled to between 0 and 1.
+   */
+  protected OcrWordIndex readSparseText(final Mat img, final TesseractProfile profile)
+  {
+    List<Word> words;
+    try
+    {
+      words = getWords(profile, img);
+    }
+    catch (TesseractException x)
+    {
+      LOG.error("Could not parse text from the given image!", x);
+      words = ImmutableList.of();
+    }
+    final List<Pair<Float, java.awt.Rectangle>> boxes = new ArrayList<>(words.size());
+    for (final Word w : words)
+    {
+      boxes.add(new Pair<>(w.getConfidence() / 100.0f, w.getBoundingBox()));
+    }
+    final OcrWordIndex index = new OcrWordIndex(img, boxes);
+    for (int i = 0; i < words.size(); i++)
+    {
+      final Word w = words.get(i);
+      index.put(i, toWord(boxes.get(i), w.getText()), Math.round(w.getConfidence()));
+    }
+    LOG.debug("Read {} words in a single pass", words.size());
+    return index;
+  }
+
+  /**
+   * @return the text detectors to try, in turn
+   */
+  protected static TextDetector[] textDetectors(final OcrMatchingBy params)
+  {
+    final TextDetector[] detectors = params.getTextDetectors();
+    return isNull(detectors) || detectors.length == 0
+        ? new TextDetector[]{TextDetector.EAST}
+        : detectors;
+  }
+
+  /**
+   * Recognises the text in those of the given boxes that have not been recognised yet.
+   *
+   * @param params how to recognise the text, which must be the same every time for the same index
+   * @param index  the boxes where text was detected, and the words recognised so far
+   * @param boxes  the indices of the boxes to be recognised
+   */
+  protected void recogniseBoxes(final OcrMatchingBy params,
+                                final OcrWordIndex index,
+                                final int[] boxes)
+  {
+    final int[] pending = index.pending(boxes);
+    if (pending.length == 0)
+    {
+      return;
+    }
+    final List<Pair<Float, java.awt.Rectangle>> scoresAndRectangles =
+        new ArrayList<>(pending.length);
+    for (final int i : pending)
+    {
+      scoresAndRectangles.add(index.boxes.get(i));
+    }
+    final List<Pair<String, Integer>> texts;
+    try
+    {
+      texts = recogniseAreas(params, index.img, rectanglesOf(scoresAndRectangles));
+    }
+    catch (TesseractException x)
+    {
+      LOG.error("Could not parse text from the given image!", x);
+      return;
+    }
+    final List<Word> words = toWords(scoresAndRectangles, texts);
+    for (int k = 0; k < pending.length; k++)
+    {
+      index.put(pending[k], words.get(k), texts.get(k).b);
+    }
+    LOG.debug("Recognised {} more of {} text boxes", pending.length, index.size());
+  }
+
+  /**
+   * Recognises the text inside each of several areas of the same image, with the recogniser the
+   * parameters choose.
+   *
+   * @param params     how to recognise the text
+   * @param img        the image to be OCR'ed
+   * @param rectangles the areas of the image to be OCR'ed
+   * @return for each area, in the same order, the text recognised and the confidence in it, from 0
+   * to 100
+   * @throws TesseractException if recognition was interrupted
+   */
+  protected List<Pair<String, Integer>> recogniseAreas(final OcrMatchingBy params,
+                                                       final Mat img,
+                                                       final List<java.awt.Rectangle> rectangles)
+      throws TesseractException
+  {
+    if (params.getTextRecogniser() == TextRecogniser.GLYPHS)
+    {
+      return GlyphOcr.recognise(img, rectangles, glyphSet(params.getGlyphSet()));
+    }
+    return doOCR(profile(params), img, rectangles);
+  }
+
+  /**
+   * @return what the text recognised in a box depends on, besides the box itself
+   */
+  protected List<Object> recogniserKey(final OcrMatchingBy params)
+  {
+    return params.getTextRecogniser() == TextRecogniser.GLYPHS
+        ? Arrays.asList(TextRecogniser.GLYPHS, params.getGlyphSet())
+        : Arrays.asList(TextRecogniser.TESSERACT, profile(params));
+  }
+
+  /**
+   * @return everything the words recognised in an image depend on, besides the image itself
+   */
+  protected List<Object> wordIndexKey(final OcrMatchingBy params, final TextDetector detector)
+  {
+    return Arrays.asList(ImgRecogMethod.OCR, detector, params.getFilters(), params.getMinScore(),
+        params.getNms(), params.getIou(), params.getPadding(), minInputPixels(params),
+        maxInputPixels(params), detector == TextDetector.TESSERACT
+            ? profile(params)
+            : recogniserKey(params));
+  }
+
+  /**
+   * Like {@link #locateText(OcrMatchingBy, Mat, FrameCache, boolean)}, but recognises the text
+   * boxes from the most to the least promising one, as many at a time as there are Tesseract
+   * handles, and stops as soon as a word passes the test with enough confidence. If no word does,
+   * then the word passing the test with the highest score, if any, is the match, as usual.
+   *
+   * @param params      set of parameters for the OCR engine, and definition of what to consider as
+   *                    a successful match
+   * @param index       the boxes where text was detected, and the words recognised so far
+   * @param isDebugMode if "debug" mode is enabled, then a window will pop up, displaying the search
+   *                    results
+   * @return maybe a successful match, maybe nothing
+   */
+  protected Optional<OcrMatchResult> locateTextEarly(final OcrMatchingBy params,
+                                                     final OcrWordIndex index,
+                                                     final boolean isDebugMode)
+  {
+    final OcrTextMatcher textMatcher = OcrTextMatcher.of(params);
+
+    final int minTextConfidence = nonNull(params.getMinTextConfidence())
+        ? params.getMinTextConfidence()
+        : OcrMatching.MIN_TEXT_CONFIDENCE;
+
+    final int numOfChars = params.getSearchTerm().length();
+    final int[] boxes = Arrays.stream(index.plausible(params))
+        .boxed()
+        .sorted(Comparator.comparing((Integer i) -> index.boxes.get(i).a
+            * lengthFit(index.boxes.get(i).b, params.getOcrTest(), numOfChars)).reversed())
+        .mapToInt(Integer::intValue)
+        .toArray();
+
+    // Glyphs are recognised in a few milliseconds, one box at a time.
+    final int batchSize = params.getTextRecogniser() == TextRecogniser.GLYPHS
+        ? 1
+        : tesseracts(profile(params).language).size();
+    Word bestMatch = null;
+    boolean isConfident = false;
+    for (int from = 0; from < boxes.length && !isConfident; from += batchSize)
+    {
+      final int[] batch = Arrays.copyOfRange(boxes, from, Math.min(from + batchSize, boxes.length));
+      recogniseBoxes(params, index, batch);
+      for (int k = 0; k < batch.length && !isConfident; k++)
+      {
+        final Word w = index.word(batch[k]);
+        if (nonNull(w) && nonNull(w.getText()) && textMatcher.matches(w.getText()))
+        {
+          isConfident = index.textConfidence(batch[k]) >= minTextConfidence;
+          if (isConfident || isNull(bestMatch) || w.getConfidence() > bestMatch.getConfidence())
+          {
+            bestMatch = w;
+          }
+        }
+      }
+    }
+
+    if (nonNull(bestMatch))
+    {
+      if (isDebugMode)
+      {
+        showResults(params, bestMatch, index.img.clone(), true);
+      }
+      return Optional.of(toMatchResult(bestMatch, index.img, params));
+    }
+    else if (isDebugMode)
+    {
+      showResults(params, index.words(), index.img.clone(), false);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Estimates how many characters fit in a box around a line of text, from the box's aspect ratio.
+   */
+  protected static double estimatedNumOfChars(final java.awt.Rectangle box)
+  {
+    return box.getWidth() / (box.getHeight() * OcrMatching.CHAR_ASPECT_RATIO);
+  }
+
+  /**
+   * @return how likely a box is, judging only by its shape, to contain text passing a test with a
+   * search term of a given length, from 0.0 to 1.0
+   */
+  protected static double lengthFit(final java.awt.Rectangle box,
+                                    final OcrTest test,
+                                    final int numOfChars)
+  {
+    if (box.isEmpty())
+    {
+      return 0.0;
+    }
+    final double estimate = estimatedNumOfChars(box);
+    switch (test)
+    {
+      case EQUALS:
+      case EQUALS_IGNORE_CASE:
+      case FUZZY_EQUALS:
+        return Math.min(estimate, numOfChars) / Math.max(estimate, numOfChars);
+      case CONTAINS:
+      case CONTAINS_IGNORE_CASE:
+      case FUZZY_CONTAINS:
+        return Math.min(1.0, estimate / numOfChars);
+      default:
+        return 1.0;
+    }
+  }
+
   /**
    * Performs text detection using <a href="https://github.com/argman/EAST">EAST</a>.
    *
@@ -184,45 +687,226 @@ public class TesseractOcrMatcher implements Closeable
                                                       final float iouThresh,
                                                       final Padding padding)
   {
-    // width and height must be multiples of 32
-    final Size size = new Size(640, 640);
-    // Height of the output geometry and score matrices.
-    // Geometry has 4 vertically stacked maps. Score has 1.
-    final int H = (int) (size.height / 4);
+    return detect(img, scoreThresh, nmsThresh, iouThresh, padding,
+        OcrMatching.MIN_INPUT_PIXELS, OcrMatching.MAX_INPUT_PIXELS);
+  }
+
+  /**
+   * Performs text detection using <a href="https://github.com/argman/EAST">EAST</a>.
+   *
+   * @param img            the image to be OCR'ed
+   * @param scoreThresh    the minimum text detection confidence score
+   * @param nmsThresh      the Non-Maximum Suppression bounding box overlap threshold
+   * @param iouThresh      the intersection-over-union bounding box overlap threshold
+   * @param padding        to add padding to the boxes' sides
+   * @param minInputPixels see {@link OcrMatchingBy#getMinInputPixels()}
+   * @param maxInputPixels see {@link OcrMatchingBy#getMaxInputPixels()}
+   * @return a list of confidence scores and bounding boxes of areas where text was detected
+   */
+  public List<Pair<Float, java.awt.Rectangle>> detect(final Mat img,
+                                                      final float scoreThresh,
+                                                      final float nmsThresh,
+                                                      final float iouThresh,
+                                                      final Padding padding,
+                                                      final int minInputPixels,
+                                                      final int maxInputPixels)
+  {
+    return detect(Collections.singletonList(img), scoreThresh, nmsThresh, iouThresh, padding,
+        minInputPixels, maxInputPixels).get(0);
+  }
+
+  /**
+   * Performs text detection using <a href="https://github.com/argman/EAST">EAST</a> on several
+   * images at once, e.g., several cutouts of the same screenshot, or a burst of frames. Images fed
+   * to EAST with the same size go through the network together, in a single forward pass.
+   *
+   * @param imgs           the images to be OCR'ed
+   * @param scoreThresh    the minimum text detection confidence score
+   * @param nmsThresh      the Non-Maximum Suppression bounding box overlap threshold
+   * @param iouThresh      the intersection-over-union bounding box overlap threshold
+   * @param padding        to add padding to the boxes' sides
+   * @param minInputPixels see {@link OcrMatchingBy#getMinInputPixels()}
+   * @param maxInputPixels see {@link OcrMatchingBy#getMaxInputPixels()}
+   * @return for each image, in the same order, a list of confidence scores and bounding boxes of
+   * areas where text was detected
+   */
+  public List<List<Pair<Float, java.awt.Rectangle>>> detect(final List<Mat> imgs,
+                                                            final float scoreThresh,
+                                                            final float nmsThresh,
+                                                            final float iouThresh,
+                                                            final Padding padding,
+                                                            final int minInputPixels,
+                                                            final int maxInputPixels)
+  {
+    final List<Size> sizes = new ArrayList<>(imgs.size());
+    for (final Mat img : imgs)
+    {
+      sizes.add(blobSize(img.size(), minInputPixels, maxInputPixels));
+    }
+    final List<Pair<Mat, Mat>> outs = forward(imgs, sizes);
+    final List<List<Pair<Float, java.awt.Rectangle>>> results = new ArrayList<>(imgs.size());
+    for (int i = 0; i < imgs.size(); i++)
+    {
+      results.add(toBoxes(outs.get(i).a, outs.get(i).b, imgs.get(i), sizes.get(i), scoreThresh,
+          nmsThresh, iouThresh, padding));
+    }
+    return results;
+  }
+
+  /**
+   * Filters the images and detects text in them, as {@link #locateText(OcrMatchingBy, Mat,
+   * FrameCache, boolean)} would, so that locating text afterwards, with the same parameters, in the
+   * same images, only has to recognise it. Unlike locating text one image after another, text is
+   * detected in every image at once, so the network does not have to run once per image.
+   * Images whose text has already been detected are skipped. Only the first of each locator's
+   * {@link OcrMatchingBy#getTextDetectors() text detectors} is run, the others being fallbacks.
+   *
+   * @param paramsList for each image, parameters for the OCR engine
+   * @param imgs       the (unfiltered) images to be OCR'ed, e.g., several cutouts of a screenshot
+   * @param frameCache where to store the results
+   */
+  public void detectAll(final List<OcrMatchingBy> paramsList,
+                        final List<Mat> imgs,
+                        final FrameCache frameCache)
+  {
+    final List<OcrMatchingBy> pendingParams = new ArrayList<>(imgs.size());
+    final List<Mat> pendingImgs = new ArrayList<>(imgs.size());
+    final List<Mat> filteredImgs = new ArrayList<>(imgs.size());
+    final List<Size> sizes = new ArrayList<>(imgs.size());
+    final Set<List<Object>> keys = new HashSet<>();
+    for (int i = 0; i < imgs.size(); i++)
+    {
+      final OcrMatchingBy params = paramsList.get(i);
+      final Mat img = imgs.get(i);
+      final TextDetector detector = textDetectors(params)[0];
+      if (detector != TextDetector.EAST)
+      {
+        // Cheap enough not to be worth batching.
+        detectAll(params, detector, img, frameCache);
+        continue;
+      }
+      if (frameCache.contains(img, wordIndexKey(params, detector))
+          || !keys.add(FrameCache.key(img, wordIndexKey(params, detector))))
+      {
+        continue;
+      }
+      final Mat filteredImg = OpenCvImgUtils.accFilters(params.getFilters()).apply(img);
+      pendingParams.add(params);
+      pendingImgs.add(img);
+      filteredImgs.add(filteredImg);
+      sizes.add(blobSize(filteredImg.size(), minInputPixels(params), maxInputPixels(params)));
+    }
+    if (pendingImgs.isEmpty())
+    {
+      return;
+    }
+
+    final List<Pair<Mat, Mat>> outs = forward(filteredImgs, sizes);
+    for (int i = 0; i < pendingImgs.size(); i++)
+    {
+      final OcrMatchingBy params = pendingParams.get(i);
+      final Mat filteredImg = filteredImgs.get(i);
+      final List<Pair<Float, java.awt.Rectangle>> boxes = toBoxes(outs.get(i).a, outs.get(i).b,
+          filteredImg, sizes.get(i), params.getMinScore(), params.getNms(), params.getIou(),
+          params.getPadding());
+      frameCache.computeIfAbsent(pendingImgs.get(i), wordIndexKey(params, TextDetector.EAST),
+          () -> new OcrWordIndex(filteredImg, boxes));
+    }
+  }
+
+  /**
+   * Feeds images to EAST, those to be resized to the same size together, as a single blob.
+   *
+   * @param imgs  the images to be OCR'ed
+   * @param sizes for each image, the size it must be resized to, in multiples of 32
+   * @return for each image, in the same order, its score map and its geometry maps, stacked on top
+   * of one another
+   */
+  protected List<Pair<Mat, Mat>> forward(final List<Mat> imgs, final List<Size> sizes)
+  {
     // Mean RGB intensity of the images used to train the frozen NN. It must be subtracted from the
     // new image to get accurate results.
     final Scalar meanRgb = new Scalar(123.68, 116.78, 103.94);
-    final Mat blob = Dnn.blobFromImage(img, 1.0, size, meanRgb, true, false);
-    net.setInput(blob);
     // define the two output layer names for the EAST detector model that
     // we are interested -- the first is the output probabilities and the
     // second can be used to derive the bounding box coordinates of text
-    final List<Mat> outs = new ArrayList<>(2);
     final List<String> outNames = new ArrayList<>(2);
     outNames.add(CONF_LAYER);
     outNames.add(BB_LAYER);
-    net.forward(outs, outNames);
-
-    // Decode predicted bounding boxes.
-    // How to reshape an n-dimensional matrix down to 2d:
-    // http://answers.opencv.org/question/175676/javaandroid-access-4-dim-mat-planes/
-    // Geometry, as far as I can understand it, is a 5d blob: 1 layer of angle data,
-    // and 4 layers of polar coordinates that need to be converted to regular x,y coordinates.
-    // In order to facilite this conversion, first geometry is reshaped into a 2d blob,
-    // where the original layers are stacked on top of one another and can be easily subdivided.
-    final Mat scores = outs.get(0).reshape(1, H);
-    final Mat geometry = outs.get(1).reshape(1, 5 * H);
+
+    final Map<Size, List<Integer>> batches = new LinkedHashMap<>();
+    for (int i = 0; i < imgs.size(); i++)
+    {
+      batches.computeIfAbsent(sizes.get(i), size -> new ArrayList<>()).add(i);
+    }
+
+    final List<Pair<Mat, Mat>> results = new ArrayList<>(Collections.nCopies(imgs.size(), null));
+    for (final Map.Entry<Size, List<Integer>> batch : batches.entrySet())
+    {
+      final Size size = batch.getKey();
+      final List<Integer> indices = batch.getValue();
+      final List<Mat> batchImgs = new ArrayList<>(indices.size());
+      for (final int i : indices)
+      {
+        batchImgs.add(imgs.get(i));
+      }
+      final Mat blob = Dnn.blobFromImages(batchImgs, 1.0, size, meanRgb, true, false);
+      final List<Mat> outs = new ArrayList<>(2);
+      final Net eastNet = net();
+      synchronized (eastNet)
+      {
+        eastNet.setInput(blob);
+        eastNet.forward(outs, outNames);
+      }
+      blob.release();
+
+      // How to reshape an n-dimensional matrix down to 2d:
+      // http://answers.opencv.org/question/175676/javaandroid-access-4-dim-mat-planes/
+      // The outputs are 4d blobs, with one image after another. Reshaped into 2d, each image's
+      // maps are stacked on top of one another, right below the previous image's, so each image's
+      // maps are a range of rows. Score has 1 map per image. Geometry has 5: 4 layers of polar
+      // coordinates that need to be converted to regular x,y coordinates, and 1 of angle data.
+      // Height of each map.
+      final int H = (int) (size.height / 4);
+      final Mat scores = outs.get(0).reshape(1, indices.size() * H);
+      final Mat geometry = outs.get(1).reshape(1, indices.size() * 5 * H);
+      for (int k = 0; k < indices.size(); k++)
+      {
+        results.set(indices.get(k), new Pair<>(
+            scores.rowRange(k * H, (k + 1) * H),
+            geometry.rowRange(k * 5 * H, (k + 1) * 5 * H)));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Turns the maps EAST output for an image into boxes where text was detected.
+   *
+   * @param scores      the image's score map
+   * @param geometry    the image's geometry maps, stacked on top of one another
+   * @param img         the image that was OCR'ed
+   * @param size        the size the image was resized to, before being fed to EAST
+   * @param scoreThresh the minimum text detection confidence score
+   * @param nmsThresh   the Non-Maximum Suppression bounding box overlap threshold
+   * @param iouThresh   the intersection-over-union bounding box overlap threshold
+   * @param padding     to add padding to the boxes' sides
+   * @return a list of confidence scores and bounding boxes of areas where text was detected
+   */
+  protected static List<Pair<Float, java.awt.Rectangle>> toBoxes(final Mat scores,
+                                                                 final Mat geometry,
+                                                                 final Mat img,
+                                                                 final Size size,
+                                                                 final float scoreThresh,
+                                                                 final float nmsThresh,
+                                                                 final float iouThresh,
+                                                                 final Padding padding)
+  {
     // Filters out all boxes whose score was below the threshold.
-    final Pair<List<Float>, List<RotatedRect>> scoresAndBoxes =
-        decode(scores, geometry, scoreThresh);
+    final RotatedBoxes candidates = decode(scores, geometry, scoreThresh);
 
-    // Apply non-maximum suppression procedure.
-    final MatOfFloat confidences = new MatOfFloat(Converters.vector_float_to_Mat(scoresAndBoxes.a));
-    final Float[] scoreArray = scoresAndBoxes.a.toArray(new Float[0]);
-    final RotatedRect[] boxArray = scoresAndBoxes.b.toArray(new RotatedRect[0]);
-    final MatOfRotatedRect boxes = new MatOfRotatedRect(boxArray);
-    final MatOfInt indices = new MatOfInt();
-    Dnn.NMSBoxesRotated(boxes, confidences, scoreThresh, nmsThresh, indices);
+    // Apply non-maximum suppression procedure, on the upright bounds of the rotated boxes.
+    final TextBoxes boxes = candidates.bounds().suppressNonMaxima(nmsThresh);
 
     // The output geometry is smaller than the original image.
     // So we apply a ratio to get everything back to the original proportions.
@@ -230,30 +914,91 @@ public class TesseractOcrMatcher implements Closeable
         (float) img.cols() / size.width,
         (float) img.rows() / size.height);
 
-    final int[] indexArray = indices.toArray();
-    final Size frameSize = img.size();
-    final List<Pair<Float, java.awt.Rectangle>> rects = new ArrayList<>(indexArray.length);
+    return toRectangles(boxes, ratio, img.size(), padding, iouThresh);
+  }
+
+  /**
+   * Scales, pads and fits the boxes where text was detected into the image, and merges those that
+   * overlap.
+   *
+   * @param boxes     the boxes where text was detected
+   * @param ratio     how much to scale the boxes by, horizontally and vertically
+   * @param frameSize the size of the image the boxes must fit into
+   * @param padding   to add padding to the boxes' sides
+   * @param iouThresh the intersection-over-union bounding box overlap threshold
+   * @return a list of confidence scores and bounding boxes of areas where text was detected, from
+   * top to bottom, and from left to right
+   */
+  protected static List<Pair<Float, java.awt.Rectangle>> toRectangles(final TextBoxes boxes,
+                                                                      final Point ratio,
+                                                                      final Size frameSize,
+                                                                      final Padding padding,
+                                                                      final float iouThresh)
+  {
+    final TextBoxes rects = new TextBoxes(boxes.size);
 
     final double lp = padding.getLeft();
     final double rp = padding.getRight();
     final double tp = padding.getTop();
     final double bp = padding.getBottom();
 
-    for (final int index : indexArray)
+    for (int i = 0; i < boxes.size; i++)
     {
-      final Float score = scoreArray[index];
-      final RotatedRect rotatedRect = boxArray[index];
-      final java.awt.Rectangle rect = toRect(rotatedRect, ratio, lp, rp, tp, bp);
+      final java.awt.Rectangle rect = toRect(boxes.boundingRect(i), ratio, lp, rp, tp, bp);
       final java.awt.Rectangle fittedRect = OpenCvImgUtils.fitRect(frameSize, rect);
-      rects.add(new Pair<>(score, fittedRect));
+      rects.add(boxes.scores[i], fittedRect.x, fittedRect.y,
+          (float) fittedRect.x + fittedRect.width, (float) fittedRect.y + fittedRect.height);
     }
 
-    mergeRects(rects, iouThresh);
+    final TextBoxes merged = rects.mergeOverlapping(iouThresh);
+    final List<Pair<Float, java.awt.Rectangle>> results = new ArrayList<>(merged.size);
+    for (int i = 0; i < merged.size; i++)
+    {
+      results.add(new Pair<>(merged.scores[i], merged.toRectangle(i)));
+    }
     // Sorts the boxes according to their upper left corner x,y coordinates.
-    return rects.stream()
-        .sorted(Comparator.comparing((Pair<Float, java.awt.Rectangle> p) -> p.b.y)
-            .thenComparing(p -> p.b.x))
-        .collect(Collectors.toList());
+    results.sort(Comparator.comparing((Pair<Float, java.awt.Rectangle> p) -> p.b.y)
+        .thenComparing(p -> p.b.x));
+    return results;
+  }
+
+  /**
+   * Chooses the size of the image fed to EAST. The image keeps its aspect ratio, so that text is
+   * not stretched, and is only resized when its number of pixels falls outside of the given
+   * bounds. Each side is then rounded to the nearest multiple of 32, as EAST requires.
+   *
+   * @param imgSize   the size of the image to be OCR'ed
+   * @param minPixels see {@link OcrMatchingBy#getMinInputPixels()}
+   * @param maxPixels see {@link OcrMatchingBy#getMaxInputPixels()}
+   * @return the size of the input blob
+   */
+  protected static Size blobSize(final Size imgSize, final int minPixels, final int maxPixels)
+  {
+    final double area = imgSize.width * imgSize.height;
+    final double targetArea = Math.max(minPixels, Math.min(maxPixels, area));
+    final double scale = area > 0 ? Math.sqrt(targetArea / area) : 1.0;
+    return new Size(
+        roundToMultipleOf32(imgSize.width * scale),
+        roundToMultipleOf32(imgSize.height * scale));
+  }
+
+  protected static int roundToMultipleOf32(final double length)
+  {
+    return Math.max(32, (int) Math.round(length / 32.0) * 32);
+  }
+
+  protected static int minInputPixels(final OcrMatchingBy params)
+  {
+    return nonNull(params.getMinInputPixels())
+        ? params.getMinInputPixels()
+        : OcrMatching.MIN_INPUT_PIXELS;
+  }
+
+  protected static int maxInputPixels(final OcrMatchingBy params)
+  {
+    return nonNull(params.getMaxInputPixels())
+        ? params.getMaxInputPixels()
+        : OcrMatching.MAX_INPUT_PIXELS;
   }
 
   /**
@@ -266,33 +1011,39 @@ public class TesseractOcrMatcher implements Closeable
   public List<Word> recognise(final BufferedImage img,
                               final List<Pair<Float, java.awt.Rectangle>> scoresAndRectangles)
   {
-    final List<IIOImage> iioImages = toIIOImageList(img);
-
-    // Tesseract tries to recognise the text found by EAST.
-    final List<Word> words = new ArrayList<>(scoresAndRectangles.size());
-    for (int i = 0; i < scoresAndRectangles.size(); i++)
+    try
     {
-      final Pair<Float, java.awt.Rectangle> p = scoresAndRectangles.get(i);
-      try
-      {
-        final String text = tesseract.doOCR(iioImages, p.b);
-        LOG.debug("word[{}]={}", i, text);
-        final String trimmed = nonNull(text) ? text.trim() : null;
-        words.add(new Word(trimmed, p.a, p.b));
-      }
-      catch (TesseractException x)
-      {
-        LOG.error("Could not parse text from the given image! (i={})", i, x);
-      }
+      return toWords(scoresAndRectangles,
+          tesseracts(language).doOCR(TesseractProfile.of(language), img,
+              rectanglesOf(scoresAndRectangles)));
     }
+    catch (TesseractException x)
+    {
+      LOG.error("Could not parse text from the given image!", x);
+      return new ArrayList<>(0);
+    }
+  }
 
-    // EAST+Tesseract, with one-time init, using the FAST NN, on an image with 14 text boxes,
-    // took ~2.0s, or 0.15s per box.
-    // It barely lost any precision as compared to the BEST NN. And it beats pure Tesseract in text
-    // detection and recognition. (Getting the rectangles as tightly fit as possible round the text
-    // is very important for better text recognition.)
-
-    return words;
+  /**
+   * Performs text recognition using <a href="https://tesseract-ocr.github.io/">Tesseract</a>.
+   *
+   * @param img                 the image to be OCR'ed
+   * @param scoresAndRectangles a list of score, location pairs where text has been detected
+   * @return a list of located words. Each {@link Word} contains text, score, and bounding box.
+   */
+  public List<Word> recognise(final Mat img,
+                              final List<Pair<Float, java.awt.Rectangle>> scoresAndRectangles)
+  {
+    try
+    {
+      return toWords(scoresAndRectangles,
+          doOCR(TesseractProfile.of(language), img, rectanglesOf(scoresAndRectangles)));
+    }
+    catch (TesseractException x)
+    {
+      LOG.error("Could not parse text from the given image!", x);
+      return new ArrayList<>(0);
+    }
   }
 
   /**
@@ -304,11 +1055,35 @@ public class TesseractOcrMatcher implements Closeable
    */
   public Optional<String> recognise(final BufferedImage img, final java.awt.Rectangle rectangle)
   {
-    final List<IIOImage> iioImages = toIIOImageList(img);
+    try
+    {
+      final String text = tesseracts(language).doOCR(TesseractProfile.of(language), img,
+          Collections.singletonList(wholeIfEmpty(rectangle, img.getWidth(), img.getHeight())))
+          .get(0).a;
+      LOG.debug("OCR'ed text={}", text);
+      return Optional.ofNullable(text);
+    }
+    catch (TesseractException x)
+    {
+      LOG.error("Could not parse text from the given image!", x);
+    }
+    return Optional.empty();
+  }
 
+  /**
+   * Performs text recognition using <a href="https://tesseract-ocr.github.io/">Tesseract</a>.
+   *
+   * @param img       the image to be OCR'ed
+   * @param rectangle the bounding box telling what area of the image should be OCR'ed
+   * @return the text, if any was recognised.
+   */
+  public Optional<String> recognise(final Mat img, final java.awt.Rectangle rectangle)
+  {
     try
     {
-      final String text = tesseract.doOCR(iioImages, rectangle);
+      final String text = doOCR(TesseractProfile.of(language), img,
+          Collections.singletonList(wholeIfEmpty(rectangle, img.cols(), img.rows())))
+          .get(0).a;
       LOG.debug("OCR'ed text={}", text);
       return Optional.ofNullable(text);
     }
@@ -319,6 +1094,164 @@ public class TesseractOcrMatcher implements Closeable
     return Optional.empty();
   }
 
+  /**
+   * Hands an image's pixel data straight to Tesseract, without encoding and decoding it as a
+   * {@link BufferedImage}, unless it is not in a form Tesseract can read as it is.
+   */
+  protected List<Pair<String, Integer>> doOCR(final TesseractProfile profile,
+                                              final Mat img,
+                                              final List<java.awt.Rectangle> rectangles)
+      throws TesseractException
+  {
+    final Optional<Mat> mbPixels = toTesseractPixels(img);
+    if (!mbPixels.isPresent())
+    {
+      return tesseracts(profile.language).doOCR(profile, toBufferedImage(img), rectangles);
+    }
+    final Mat pixels = mbPixels.get();
+    try
+    {
+      // A view of the Mat's own memory, rather than a copy of it.
+      final ByteBuffer buffer =
+          new Pointer(pixels.dataAddr()).getByteBuffer(0, pixels.total() * pixels.elemSize());
+      return tesseracts(profile.language).doOCR(profile, buffer, pixels.cols(), pixels.rows(),
+          8 * pixels.channels(), rectangles);
+    }
+    finally
+    {
+      // Also keeps the pixels from being released while Tesseract reads them.
+      pixels.release();
+    }
+  }
+
+  /**
+   * Finds and recognises the words in a whole image, with a single Tesseract pass, in sparse text
+   * page segmentation mode.
+   *
+   * @param profile how to recognise the text, apart from its page segmentation mode
+   * @param img     the image to be OCR'ed
+   * @return the words, with Tesseract's confidence in each, from 0 to 100, and their bounding boxes
+   * @throws TesseractException if recognition was interrupted
+   */
+  protected List<Word> getWords(final TesseractProfile profile, final Mat img)
+      throws TesseractException
+  {
+    final Optional<Mat> mbPixels = toTesseractPixels(img);
+    if (!mbPixels.isPresent())
+    {
+      final BufferedImage bi = toBufferedImage(img);
+      return tesseracts(profile.language).getWords(profile, ImageIOHelper.getImageByteBuffer(bi),
+          bi.getWidth(), bi.getHeight(), bi.getColorModel().getPixelSize(),
+          OcrMatching.SPARSE_TEXT_PAGE_SEGMENTATION_MODE, PageIteratorLevel.WORD);
+    }
+    final Mat pixels = mbPixels.get();
+    try
+    {
+      // A view of the Mat's own memory, rather than a copy of it.
+      final ByteBuffer buffer =
+          new Pointer(pixels.dataAddr()).getByteBuffer(0, pixels.total() * pixels.elemSize());
+      return tesseracts(profile.language).getWords(profile, buffer, pixels.cols(), pixels.rows(),
+          8 * pixels.channels(), OcrMatching.SPARSE_TEXT_PAGE_SEGMENTATION_MODE,
+          PageIteratorLevel.WORD);
+    }
+    finally
+    {
+      // Also keeps the pixels from being released while Tesseract reads them.
+      pixels.release();
+    }
+  }
+
+  /**
+   * Tesseract reads images with 8 bits per channel, with grey, RGB or RGBA channels, and with no
+   * padding between rows.
+   *
+   * @param img an image, as read by OpenCV
+   * @return the same image in a form Tesseract can read, possibly sharing its pixels with the given
+   * image, or nothing, if it has some other depth or number of channels
+   */
+  protected static Optional<Mat> toTesseractPixels(final Mat img)
+  {
+    if (img.depth() != CvType.CV_8U)
+    {
+      return Optional.empty();
+    }
+    switch (img.channels())
+    {
+      case 1:
+        // A new header, so that releasing it does not release the given image.
+        return Optional.of(img.isContinuous() ? img.submat(0, img.rows(), 0, img.cols())
+            : img.clone());
+      case 3:
+        final Mat rgb = new Mat();
+        Imgproc.cvtColor(img, rgb, Imgproc.COLOR_BGR2RGB);
+        return Optional.of(rgb);
+      case 4:
+        final Mat rgba = new Mat();
+        Imgproc.cvtColor(img, rgba, Imgproc.COLOR_BGRA2RGBA);
+        return Optional.of(rgba);
+      default:
+        return Optional.empty();
+    }
+  }
+
+  /**
+   * @return the rectangle, or the whole image if the rectangle is empty, as has always been the
+   * case with Tesseract
+   */
+  protected static java.awt.Rectangle wholeIfEmpty(final java.awt.Rectangle rectangle,
+                                                   final int width,
+                                                   final int height)
+  {
+    return rectangle.isEmpty() ? new java.awt.Rectangle(0, 0, width, height) : rectangle;
+  }
+
+  protected static List<java.awt.Rectangle> rectanglesOf(
+      final List<Pair<Float, java.awt.Rectangle>> scoresAndRectangles)
+  {
+    final List<java.awt.Rectangle> rectangles = new ArrayList<>(scoresAndRectangles.size());
+    for (final Pair<Float, java.awt.Rectangle> p : scoresAndRectangles)
+    {
+      rectangles.add(p.b);
+    }
+    return rectangles;
+  }
+
+  /**
+   * Pairs each text recognised by Tesseract with the score and location of the box it was found in.
+   */
+  protected static List<Word> toWords(
+      final List<Pair<Float, java.awt.Rectangle>> scoresAndRectangles,
+      final List<Pair<String, Integer>> texts)
+  {
+    final List<Word> words = new ArrayList<>(scoresAndRectangles.size());
+    for (int i = 0; i < scoresAndRectangles.size(); i++)
+    {
+      final Pair<Float, java.awt.Rectangle> p = scoresAndRectangles.get(i);
+      final String text = texts.get(i).a;
+      LOG.debug("word[{}]={} (Tesseract confidence={})", i, text, texts.get(i).b);
+      words.add(toWord(p, text));
+    }
+
+    // EAST+Tesseract, with one-time init, using the FAST NN, on an image with 14 text boxes,
+    // took ~2.0s, or 0.15s per box.
+    // It barely lost any precision as compared to the BEST NN. And it beats pure Tesseract in text
+    // detection and recognition. (Getting the rectangles as tightly fit as possible round the text
+    // is very important for better text recognition.)
+
+    return words;
+  }
+
+  /**
+   * @return a word with the (trimmed) text recognised in a box, whose confidence is the box's text
+   * detection score, so that matches keep being ranked the same way
+   */
+  protected static Word toWord(final Pair<Float, java.awt.Rectangle> scoreAndRectangle,
+                               final String text)
+  {
+    final String trimmed = nonNull(text) ? text.trim() : null;
+    return new Word(trimmed, scoreAndRectangle.a, scoreAndRectangle.b);
+  }
+
   /**
    * Traces the lines of a rectangle, standing straight, around the original rotated rectangle. Also
    * resizes the resulting bounding box according to a given ratio. And finally adds some padding to
@@ -339,7 +1272,28 @@ public class TesseractOcrMatcher implements Closeable
                                              final double topPadding,
                                              final double bottomPadding)
   {
-    final Rect rect = rotatedRect.boundingRect();
+    return toRect(rotatedRect.boundingRect(), ratio, leftPadding, rightPadding, topPadding,
+        bottomPadding);
+  }
+
+  /**
+   * Resizes a bounding box according to a given ratio, and then adds some padding to its sides.
+   *
+   * @param rect          the bounding box
+   * @param ratio         the ratio for the resizing operation
+   * @param leftPadding   an extension to the left
+   * @param rightPadding  an extension to the right
+   * @param topPadding    an extension to the top
+   * @param bottomPadding an extension to the bottom
+   * @return a bounding box, with adjustments
+   */
+  protected static java.awt.Rectangle toRect(final Rect rect,
+                                             final Point ratio,
+                                             final double leftPadding,
+                                             final double rightPadding,
+                                             final double topPadding,
+                                             final double bottomPadding)
+  {
     final double correctedWidth = rect.width * ratio.x;
     final double correctedHeight = rect.height * ratio.y;
     final double lp = leftPadding * correctedWidth;
@@ -395,7 +1349,8 @@ public class TesseractOcrMatcher implements Closeable
 
   /**
    * Iterates over a list of rectangles, merging two or more of them whenever their IoU ratio
-   * exceeds the threshold, and otherwise leaving the rest undisturbed.
+   * exceeds the threshold, and otherwise leaving the rest undisturbed. See {@link
+   * TextBoxes#mergeOverlapping(float)}.
    *
    * @param rects     the list of rectangles
    * @param iouThresh the IoU threshold
@@ -403,95 +1358,77 @@ public class TesseractOcrMatcher implements Closeable
   protected static void mergeRects(final List<Pair<Float, java.awt.Rectangle>> rects,
                                    final double iouThresh)
   {
-    int i = 0;
-    while (i < rects.size() - 1)
+    final TextBoxes boxes = new TextBoxes(rects.size());
+    for (final Pair<Float, java.awt.Rectangle> p : rects)
     {
-      final Pair<Float, java.awt.Rectangle> p1 = rects.get(i);
-      final java.awt.Rectangle r1 = p1.b;
-      int j = i + 1;
-      while (j < rects.size())
-      {
-        final Pair<Float, java.awt.Rectangle> p2 = rects.get(j);
-        final java.awt.Rectangle r2 = p2.b;
-        final Optional<java.awt.Rectangle> optionalRect = mergeRects(r1, r2, iouThresh);
-        if (optionalRect.isPresent())
-        {
-          final float minScore = Math.min(p1.a, p2.a);
-          rects.remove(j);
-          rects.set(i, new Pair<>(minScore, optionalRect.get()));
-          i--;
-          break;
-        }
-        else
-        {
-          j++;
-        }
-      }
-      i++;
+      boxes.add(p.a, p.b.x, p.b.y, (float) p.b.x + p.b.width, (float) p.b.y + p.b.height);
+    }
+    final TextBoxes merged = boxes.mergeOverlapping((float) iouThresh);
+    rects.clear();
+    for (int i = 0; i < merged.size; i++)
+    {
+      rects.add(new Pair<>(merged.scores[i], merged.toRectangle(i)));
     }
   }
 
   /**
-   * Filters and keeps the shapes whose score exceeds the threshold, then saves this to a list of
-   * confidence values and a list of bounding boxes.
+   * Filters and keeps the shapes whose score exceeds the threshold. Each map is copied out of its
+   * matrix in one go, and then scanned without creating any objects per pixel.
    *
    * @param srcScores   the raw score matrix
    * @param srcGeometry the raw rotated rectangles matrix
    * @param scoreThresh the score threshold, or lower bound for the confidence values
-   * @return a list of scores paired with a corresponding list of boxes
+   * @return the boxes whose score exceeds the threshold, with their scores
    */
-  protected static Pair<List<Float>, List<RotatedRect>> decode(final Mat srcScores,
-                                                               final Mat srcGeometry,
-                                                               final float scoreThresh)
+  protected static RotatedBoxes decode(final Mat srcScores,
+                                       final Mat srcGeometry,
+                                       final float scoreThresh)
   {
-    final List<Float> dstScores = new ArrayList<>();
-    final List<RotatedRect> dstBoxes = new ArrayList<>();
-
     // size of 1 geometry plane
     final int W = srcGeometry.cols();
     final int H = srcGeometry.rows() / 5;
+    final int planeSize = W * H;
+
+    // The geometry planes are stacked one on top of another: the distances to the top, right,
+    // bottom and left sides of the box, and then the angle.
+    final float[] scoresData = new float[planeSize];
+    final float[] geometryData = new float[5 * planeSize];
+    srcScores.get(0, 0, scoresData);
+    srcGeometry.get(0, 0, geometryData);
 
+    final RotatedBoxes dstBoxes = new RotatedBoxes(64);
     for (int y = 0; y < H; ++y)
     {
-      final Mat scoresData = srcScores.row(y);
-      final Mat x0Data = srcGeometry.submat(0, H, 0, W).row(y);
-      final Mat x1Data = srcGeometry.submat(H, 2 * H, 0, W).row(y);
-      final Mat x2Data = srcGeometry.submat(2 * H, 3 * H, 0, W).row(y);
-      final Mat x3Data = srcGeometry.submat(3 * H, 4 * H, 0, W).row(y);
-      final Mat anglesData = srcGeometry.submat(4 * H, 5 * H, 0, W).row(y);
-
       for (int x = 0; x < W; ++x)
       {
-        final double score = scoresData.get(0, x)[0];
+        final int i = y * W + x;
+        final float score = scoresData[i];
         if (score >= scoreThresh)
         {
           // Maybe as a result of how CNNs work, the output layer is 4x smaller than the input layer
           // so we have to undo that here.
           final double offsetX = x * 4.0;
           final double offsetY = y * 4.0;
-          final double angle = anglesData.get(0, x)[0];
+          final double angle = geometryData[4 * planeSize + i];
           final double cosA = Math.cos(angle);
           final double sinA = Math.sin(angle);
-          final double x0 = x0Data.get(0, x)[0];
-          final double x1 = x1Data.get(0, x)[0];
-          final double x2 = x2Data.get(0, x)[0];
-          final double x3 = x3Data.get(0, x)[0];
+          final double x0 = geometryData[i];
+          final double x1 = geometryData[planeSize + i];
+          final double x2 = geometryData[2 * planeSize + i];
+          final double x3 = geometryData[3 * planeSize + i];
           final double h = x0 + x2;
           final double w = x1 + x3;
-          final Point offset = new Point(offsetX + cosA * x1 + sinA * x2,
-              offsetY - sinA * x1 + cosA * x2);
-          final Point p1 = new Point(-1 * sinA * h + offset.x, -1 * cosA * h + offset.y);
-          final Point p3 = new Point(-1 * cosA * w + offset.x, sinA * w + offset.y);
-          final RotatedRect r = new RotatedRect(
-              new Point(0.5 * (p1.x + p3.x), 0.5 * (p1.y + p3.y)),
-              new Size(w, h),
-              -1 * angle * 180 / Math.PI);
-          dstScores.add((float) score);
-          dstBoxes.add(r);
+          final double offsetCX = offsetX + cosA * x1 + sinA * x2;
+          final double offsetCY = offsetY - sinA * x1 + cosA * x2;
+          // p1 = (-sinA * h, -cosA * h) + offset; p3 = (-cosA * w, sinA * w) + offset
+          final double cx = offsetCX - 0.5 * (sinA * h + cosA * w);
+          final double cy = offsetCY - 0.5 * (cosA * h - sinA * w);
+          dstBoxes.add(score, (float) cx, (float) cy, (float) w, (float) h,
+              (float) (-1 * angle * 180 / Math.PI));
         }
       }
     }
-    return new Pair<>(dstScores, dstBoxes);
+    return dstBoxes;
   }
 
   @SuppressWarnings("squid:S4276")
@@ -589,15 +1526,106 @@ public class TesseractOcrMatcher implements Closeable
 
   /**
    * Call this method once you're completely done and will not do any OCR anymore, to release all
-   * resources associated with the native Tesseract API.
+   * resources associated with the native Tesseract API. Models shared with other matchers are only
+   * unloaded once the last of them is closed.
    */
   @Override
   public void close()
   {
-    if (nonNull(this.tesseract) && this.tesseract instanceof Tesseract2)
+    synchronized (tesseractsLock)
+    {
+      closed = true;
+      this.tesseracts.values().forEach(ModelRegistry::release);
+      this.tesseracts.clear();
+    }
+    synchronized (glyphSetsLock)
+    {
+      this.glyphSets.values().forEach(ModelRegistry::release);
+      this.glyphSets.clear();
+    }
+    synchronized (netLock)
     {
-      ((Tesseract2) this.tesseract).actuallyDispose();
+      if (nonNull(this.net))
+      {
+        ModelRegistry.release(this.net);
+        this.net = null;
+      }
     }
   }
 
+  /**
+   * Rotated boxes where text was detected, and their scores, held in parallel primitive arrays
+   * rather than as {@link RotatedRect} objects. Only the first {@code size} elements of each array
+   * are meaningful.
+   */
+  protected static class RotatedBoxes
+  {
+
+    protected float[] scores;
+    protected float[] centreX;
+    protected float[] centreY;
+    protected float[] width;
+    protected float[] height;
+    /** In degrees, as in {@link RotatedRect#angle}. */
+    protected float[] angle;
+    protected int size;
+
+    protected RotatedBoxes(final int initialCapacity)
+    {
+      final int capacity = Math.max(1, initialCapacity);
+      this.scores = new float[capacity];
+      this.centreX = new float[capacity];
+      this.centreY = new float[capacity];
+      this.width = new float[capacity];
+      this.height = new float[capacity];
+      this.angle = new float[capacity];
+    }
+
+    protected void add(final float score,
+                       final float centreX,
+                       final float centreY,
+                       final float width,
+                       final float height,
+                       final float angle)
+    {
+      if (size == scores.length)
+      {
+        final int capacity = 2 * size;
+        this.scores = Arrays.copyOf(this.scores, capacity);
+        this.centreX = Arrays.copyOf(this.centreX, capacity);
+        this.centreY = Arrays.copyOf(this.centreY, capacity);
+        this.width = Arrays.copyOf(this.width, capacity);
+        this.height = Arrays.copyOf(this.height, capacity);
+        this.angle = Arrays.copyOf(this.angle, capacity);
+      }
+      this.scores[size] = score;
+      this.centreX[size] = centreX;
+      this.centreY[size] = centreY;
+      this.width[size] = width;
+      this.height[size] = height;
+      this.angle[size] = angle;
+      size++;
+    }
+
+    /**
+     * @return the upright bounds of every box, with its score
+     */
+    protected TextBoxes bounds()
+    {
+      final TextBoxes bounds = new TextBoxes(size);
+      for (int i = 0; i < size; i++)
+      {
+        final double radians = angle[i] * Math.PI / 180;
+        final double cos = Math.abs(Math.cos(radians));
+        final double sin = Math.abs(Math.sin(radians));
+        final float halfW = (float) (0.5 * (width[i] * cos + height[i] * sin));
+        final float halfH = (float) (0.5 * (width[i] * sin + height[i] * cos));
+        bounds.add(scores[i], centreX[i] - halfW, centreY[i] - halfH, centreX[i] + halfW,
+            centreY[i] + halfH);
+      }
+      return bounds;
+    }
+
+  }
+
 }
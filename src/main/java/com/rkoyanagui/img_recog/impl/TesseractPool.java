@@ -0,0 +1,326 @@
+package com.rkoyanagui.img_recog.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import net.sourceforge.tess4j.TesseractException;
+import net.sourceforge.tess4j.Word;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+
+/**
+ * A fixed number of {@link Tesseract2} handles, and as many threads to run them on. A Tesseract
+ * handle can only recognise one image at a time, and recognition runs on a single core, so the
+ * areas of an image to be OCR'ed are split into as many consecutive runs as there are handles, and
+ * each run is recognised by a different handle, in parallel. A handle is borrowed for as long as it
+ * recognises a run, so the pool may also be shared by several callers at once. Every handle is
+ * loaded with the same language, but each caller may set the rest of its {@link TesseractProfile}.
+ */
+class TesseractPool implements Closeable
+{
+
+  /**
+   * How often to check whether the pool was closed, while waiting for runs to finish, or for an
+   * idle handle.
+   */
+  protected static final long AWAIT_RUNS_MILLIS = 100L;
+
+  protected final List<Tesseract2> tesseracts;
+  protected final BlockingQueue<Tesseract2> idle;
+  protected final ExecutorService executor;
+  protected volatile boolean closed;
+
+  /**
+   * @param language the language of trained data
+   * @param datapath the path to the trained data file
+   * @param size     the number of Tesseract handles, and threads, at least 1
+   */
+  protected TesseractPool(final String language, final String datapath, final int size)
+  {
+    final int n = Math.max(1, size);
+    this.tesseracts = new ArrayList<>(n);
+    this.idle = new ArrayBlockingQueue<>(n);
+    for (int i = 0; i < n; i++)
+    {
+      final Tesseract2 tesseract = new Tesseract2(language, datapath);
+      this.tesseracts.add(tesseract);
+      this.idle.add(tesseract);
+    }
+    this.executor = Executors.newFixedThreadPool(n, new ThreadFactoryBuilder()
+        .setNameFormat("tesseract-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * @return how many areas can be recognised at the same time
+   */
+  protected int size()
+  {
+    return tesseracts.size();
+  }
+
+  /**
+   * Recognises the text inside each of several areas of the same image, spreading the areas over
+   * all handles.
+   *
+   * @param profile    how to recognise the text, apart from its language
+   * @param image      the image to be OCR'ed
+   * @param rectangles the areas of the image to be OCR'ed
+   * @return for each area, in the same order, the text recognised and Tesseract's confidence in it
+   * @throws TesseractException if recognition was interrupted or failed unexpectedly
+   * @see Tesseract2#doOCR(RenderedImage, List)
+   */
+  protected List<Pair<String, Integer>> doOCR(final TesseractProfile profile,
+                                              final RenderedImage image,
+                                              final List<Rectangle> rectangles)
+      throws TesseractException
+  {
+    // Converted only once, rather than once per handle.
+    return doOCR(profile, ImageIOHelper.getImageByteBuffer(image), image.getWidth(),
+        image.getHeight(), image.getColorModel().getPixelSize(), rectangles);
+  }
+
+  /**
+   * Recognises the text inside each of several areas of the same image, given as raw pixel data,
+   * spreading the areas over all handles.
+   *
+   * @param profile      how to recognise the text, apart from its language
+   * @param pixels       the image's pixels, which must stay untouched until this method returns
+   * @param width        the image's width
+   * @param height       the image's height
+   * @param bitsPerPixel 8 for grey, 24 for RGB, or 32 for RGBA images
+   * @param rectangles   the areas of the image to be OCR'ed
+   * @return for each area, in the same order, the text recognised and Tesseract's confidence in it
+   * @throws TesseractException if recognition was interrupted or failed unexpectedly, once no
+   *                            handle reads the pixels anymore
+   * @see Tesseract2#doOCR(ByteBuffer, int, int, int, List)
+   */
+  protected List<Pair<String, Integer>> doOCR(final TesseractProfile profile,
+                                              final ByteBuffer pixels,
+                                              final int width,
+                                              final int height,
+                                              final int bitsPerPixel,
+                                              final List<Rectangle> rectangles)
+      throws TesseractException
+  {
+    // Each handle needs its own copy of the image, so it does not pay to split very few areas.
+    final int numOfRuns = Math.min(size(), rectangles.size());
+    if (numOfRuns <= 1)
+    {
+      return doOCRWithIdleTesseract(profile,
+          t -> t.doOCR(pixels, width, height, bitsPerPixel, rectangles));
+    }
+
+    final int runLength = (rectangles.size() + numOfRuns - 1) / numOfRuns;
+    final List<Callable<List<Pair<String, Integer>>>> runs = new ArrayList<>(numOfRuns);
+    for (int from = 0; from < rectangles.size(); from += runLength)
+    {
+      final List<Rectangle> run =
+          rectangles.subList(from, Math.min(from + runLength, rectangles.size()));
+      runs.add(() -> doOCRWithIdleTesseract(profile,
+          t -> t.doOCR(pixels, width, height, bitsPerPixel, run)));
+    }
+    return doRuns(executor, runs);
+  }
+
+  /**
+   * Runs each of several runs on a different thread, and concatenates their results, in the same
+   * order. Runs are never cancelled, as a handle cannot be stopped halfway through native code,
+   * and whatever a run reads must outlive it. Once the result is known to be of no use, because a
+   * run failed, or the caller was interrupted, runs that have not started yet are skipped, and
+   * those under way are waited for, before this method throws.
+   *
+   * @param executor the threads to run the runs on
+   * @param runs     the runs
+   * @return the results of every run, in the same order
+   * @throws TesseractException if the caller was interrupted, or some run failed, once no run is
+   *                            under way anymore
+   */
+  protected static <T> List<T> doRuns(final ExecutorService executor,
+                                      final List<Callable<List<T>>> runs)
+      throws TesseractException
+  {
+    final AtomicBoolean abandoned = new AtomicBoolean();
+    final CountDownLatch finished = new CountDownLatch(runs.size());
+    final List<Future<List<T>>> futures = new ArrayList<>(runs.size());
+    for (final Callable<List<T>> run : runs)
+    {
+      futures.add(executor.submit(() -> {
+        try
+        {
+          return abandoned.get() ? new ArrayList<T>(0) : run.call();
+        }
+        finally
+        {
+          finished.countDown();
+        }
+      }));
+    }
+
+    final List<T> results = new ArrayList<>();
+    try
+    {
+      for (final Future<List<T>> future : futures)
+      {
+        results.addAll(future.get());
+      }
+    }
+    catch (InterruptedException x)
+    {
+      abandoned.set(true);
+      awaitRuns(executor, finished);
+      Thread.currentThread().interrupt();
+      throw new TesseractException(x);
+    }
+    catch (ExecutionException x)
+    {
+      abandoned.set(true);
+      awaitRuns(executor, finished);
+      if (x.getCause() instanceof TesseractException)
+      {
+        throw (TesseractException) x.getCause();
+      }
+      throw new TesseractException(x.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Waits, uninterruptibly, until every run has finished, or the threads have been shut down, by
+   * {@link #close()}, and no run is under way anymore. Interruptions are remembered, not lost.
+   */
+  protected static void awaitRuns(final ExecutorService executor, final CountDownLatch finished)
+  {
+    boolean isInterrupted = false;
+    while (true)
+    {
+      try
+      {
+        if (finished.await(AWAIT_RUNS_MILLIS, TimeUnit.MILLISECONDS) || executor.isTerminated())
+        {
+          break;
+        }
+      }
+      catch (InterruptedException x)
+      {
+        isInterrupted = true;
+      }
+    }
+    if (isInterrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Finds and recognises the text in a whole image, given as raw pixel data, in a single pass, on
+   * a single handle.
+   *
+   * @param profile      how to recognise the text, apart from its language and page segmentation
+   *                     mode
+   * @param pixels       the image's pixels, which must stay untouched until this method returns
+   * @param width        the image's width
+   * @param height       the image's height
+   * @param bitsPerPixel 8 for grey, 24 for RGB, or 32 for RGBA images
+   * @param pageSegMode  the page segmentation mode for this pass only, e.g., 11 for sparse text
+   * @param level        the level of the results, e.g., {@link PageIteratorLevel#WORD}
+   * @return the results, with their text, confidence and bounding box
+   * @throws TesseractException if recognition was interrupted
+   * @see Tesseract2#getWords(ByteBuffer, int, int, int, int, PageIteratorLevel)
+   */
+  protected List<Word> getWords(final TesseractProfile profile,
+                                final ByteBuffer pixels,
+                                final int width,
+                                final int height,
+                                final int bitsPerPixel,
+                                final int pageSegMode,
+                                final PageIteratorLevel level)
+      throws TesseractException
+  {
+    return doOCRWithIdleTesseract(profile,
+        t -> t.getWords(pixels, width, height, bitsPerPixel, pageSegMode, level));
+  }
+
+  protected <T> T doOCRWithIdleTesseract(final TesseractProfile profile,
+                                         final Function<Tesseract2, T> ocr)
+      throws TesseractException
+  {
+    Tesseract2 tesseract;
+    try
+    {
+      while ((tesseract = idle.poll(AWAIT_RUNS_MILLIS, TimeUnit.MILLISECONDS)) == null)
+      {
+        if (closed)
+        {
+          throw new TesseractException("This Tesseract pool has already been closed");
+        }
+      }
+    }
+    catch (InterruptedException x)
+    {
+      Thread.currentThread().interrupt();
+      throw new TesseractException(x);
+    }
+    try
+    {
+      tesseract.use(profile);
+      return ocr.apply(tesseract);
+    }
+    finally
+    {
+      idle.add(tesseract);
+    }
+  }
+
+  /**
+   * Call this method once you're completely done and will not do any OCR anymore, to release all
+   * resources associated with the native Tesseract API. Runs already submitted are let finish, and
+   * each handle is only disposed of once it is back in the pool, as a handle cannot be stopped
+   * halfway through native code, be it on one of the pool's threads or on a caller's. Waits
+   * uninterruptibly; interruptions are remembered, not lost.
+   */
+  @Override
+  public void close()
+  {
+    closed = true;
+    executor.shutdown();
+    boolean isInterrupted = false;
+    int disposed = 0;
+    while (disposed < tesseracts.size())
+    {
+      try
+      {
+        if (executor.awaitTermination(AWAIT_RUNS_MILLIS, TimeUnit.MILLISECONDS))
+        {
+          idle.take().actuallyDispose();
+          disposed++;
+        }
+      }
+      catch (InterruptedException x)
+      {
+        isInterrupted = true;
+      }
+    }
+    if (isInterrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
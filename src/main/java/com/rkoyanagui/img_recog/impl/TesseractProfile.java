@@ -0,0 +1,92 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static java.util.Objects.isNull;
+
+import com.rkoyanagui.img_recog.OcrMatchingBy;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.OcrMatching;
+import java.util.Objects;
+
+/**
+ * How Tesseract is to recognise some text: with which trained data, restricted to which
+ * characters, segmenting each area as what, and at what resolution. The trained data is loaded
+ * into every handle when the handle is created, so handles are pooled per language, while the rest
+ * is merely set on a handle before it is used, and only if it differs from what the handle was last
+ * set to.
+ */
+class TesseractProfile
+{
+
+  /** The language of trained data, e.g., {@code eng}, or {@code por+eng}. */
+  protected final String language;
+  /** The only characters that may be recognised, or empty, for any character. */
+  protected final String charWhitelist;
+  /** The page segmentation mode each area is recognised in. */
+  protected final int pageSegMode;
+  /** The resolution the image is assumed to have, in dots per inch. */
+  protected final int dpi;
+
+  protected TesseractProfile(final String language,
+                             final String charWhitelist,
+                             final int pageSegMode,
+                             final int dpi)
+  {
+    this.language = language;
+    this.charWhitelist = isNull(charWhitelist) ? "" : charWhitelist;
+    this.pageSegMode = pageSegMode;
+    this.dpi = dpi;
+  }
+
+  /**
+   * @param params          parameters for the OCR engine
+   * @param defaultLanguage the language to fall back on, if the parameters choose none
+   * @return the profile the parameters choose, falling back on the defaults for anything they do
+   * not
+   */
+  protected static TesseractProfile of(final OcrMatchingBy params, final String defaultLanguage)
+  {
+    return new TesseractProfile(
+        isNull(params.getLanguage()) || params.getLanguage().isEmpty()
+            ? defaultLanguage
+            : params.getLanguage(),
+        params.getCharWhitelist(),
+        isNull(params.getPageSegMode())
+            ? OcrMatching.PAGE_SEGMENTATION_MODE
+            : params.getPageSegMode(),
+        isNull(params.getDpi()) ? OcrMatching.DPI : params.getDpi());
+  }
+
+  /**
+   * @return the default profile for the given language
+   */
+  protected static TesseractProfile of(final String language)
+  {
+    return new TesseractProfile(language, "", OcrMatching.PAGE_SEGMENTATION_MODE,
+        OcrMatching.DPI);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) {return true;}
+    if (!(o instanceof TesseractProfile)) {return false;}
+    TesseractProfile that = (TesseractProfile) o;
+    return pageSegMode == that.pageSegMode
+        && dpi == that.dpi
+        && Objects.equals(language, that.language)
+        && Objects.equals(charWhitelist, that.charWhitelist);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(language, charWhitelist, pageSegMode, dpi);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "TesseractProfile(language=" + this.language + ", charWhitelist=" + this.charWhitelist
+        + ", pageSegMode=" + this.pageSegMode + ", dpi=" + this.dpi + ")";
+  }
+
+}
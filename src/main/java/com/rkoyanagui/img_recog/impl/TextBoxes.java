@@ -0,0 +1,266 @@
+package com.rkoyanagui.img_recog.impl;
+
+import java.util.Arrays;
+import org.opencv.core.Rect;
+
+/**
+ * Upright boxes where text was detected, and their scores, held in parallel primitive arrays. Only
+ * the first {@code size} elements of each array are meaningful. Overlapping boxes are looked up
+ * through a {@link BoxGrid}, so that suppressing or merging them takes close to linear time,
+ * rather than quadratic.
+ */
+class TextBoxes
+{
+
+  protected float[] scores;
+  protected float[] left;
+  protected float[] top;
+  protected float[] right;
+  protected float[] bottom;
+  protected int size;
+
+  protected TextBoxes(final int initialCapacity)
+  {
+    final int capacity = Math.max(1, initialCapacity);
+    this.scores = new float[capacity];
+    this.left = new float[capacity];
+    this.top = new float[capacity];
+    this.right = new float[capacity];
+    this.bottom = new float[capacity];
+  }
+
+  /**
+   * Appends a box.
+   *
+   * @return the box's index
+   */
+  protected int add(final float score,
+                    final float left,
+                    final float top,
+                    final float right,
+                    final float bottom)
+  {
+    if (size == scores.length)
+    {
+      final int capacity = 2 * size;
+      this.scores = Arrays.copyOf(this.scores, capacity);
+      this.left = Arrays.copyOf(this.left, capacity);
+      this.top = Arrays.copyOf(this.top, capacity);
+      this.right = Arrays.copyOf(this.right, capacity);
+      this.bottom = Arrays.copyOf(this.bottom, capacity);
+    }
+    this.scores[size] = score;
+    this.left[size] = left;
+    this.top[size] = top;
+    this.right[size] = right;
+    this.bottom[size] = bottom;
+    return size++;
+  }
+
+  /**
+   * @return the smallest rectangle, with integer coordinates, enclosing the box, computed the same
+   * way as {@link org.opencv.core.RotatedRect#boundingRect()}
+   */
+  protected Rect boundingRect(final int i)
+  {
+    final int x = (int) Math.floor(left[i]);
+    final int y = (int) Math.floor(top[i]);
+    return new Rect(x, y, (int) Math.ceil(right[i]) - x + 1, (int) Math.ceil(bottom[i]) - y + 1);
+  }
+
+  protected java.awt.Rectangle toRectangle(final int i)
+  {
+    return new java.awt.Rectangle((int) left[i], (int) top[i],
+        (int) (right[i] - left[i]), (int) (bottom[i] - top[i]));
+  }
+
+  /**
+   * Keeps the highest scoring boxes, discarding every box whose intersection-over-union with a
+   * higher scoring box that was kept exceeds the threshold.
+   *
+   * @param nmsThresh the non-maximum suppression threshold
+   * @return the boxes kept, from the highest scoring to the lowest
+   */
+  protected TextBoxes suppressNonMaxima(final float nmsThresh)
+  {
+    // Scores are never negative, so their bit patterns sort in the same order as their values.
+    // Subtracting them from the largest 'int' turns the ascending sort into a descending one.
+    final long[] order = new long[size];
+    for (int i = 0; i < size; i++)
+    {
+      order[i] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[i])) << 32) | i;
+    }
+    Arrays.sort(order);
+
+    final TextBoxes kept = new TextBoxes(size);
+    final BoxGrid grid = grid();
+    for (final long key : order)
+    {
+      final int i = (int) key;
+      final int numOfFound = grid.query(left[i], top[i], right[i], bottom[i]);
+      boolean suppressed = false;
+      for (int k = 0; k < numOfFound && !suppressed; k++)
+      {
+        final int j = grid.found[k];
+        suppressed = iou(left[i], top[i], right[i], bottom[i],
+            kept.left[j], kept.top[j], kept.right[j], kept.bottom[j]) > nmsThresh;
+      }
+      if (!suppressed)
+      {
+        final int j = kept.add(scores[i], left[i], top[i], right[i], bottom[i]);
+        grid.insert(j, left[i], top[i], right[i], bottom[i]);
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Merges any two boxes whose intersection-over-union is equal to or greater than the threshold
+   * into the smallest box enclosing both, with the lower of both scores, and repeats until no two
+   * boxes can be merged any more.
+   *
+   * @param iouThresh the IoU threshold
+   * @return the boxes left, those that were never merged in their original order, followed by the
+   * merged ones
+   */
+  protected TextBoxes mergeOverlapping(final float iouThresh)
+  {
+    // Each merger replaces two boxes with a new one, so there can be no more than 2n - 1 boxes.
+    final TextBoxes boxes = new TextBoxes(2 * size);
+    final boolean[] alive = new boolean[2 * size];
+    final int[] pending = new int[2 * size];
+    int numOfPending = 0;
+    final BoxGrid grid = grid();
+    for (int i = 0; i < size; i++)
+    {
+      boxes.add(scores[i], left[i], top[i], right[i], bottom[i]);
+      alive[i] = true;
+      grid.insert(i, left[i], top[i], right[i], bottom[i]);
+    }
+    // Pending boxes are popped from the end, so they are pushed in reverse order.
+    for (int i = size - 1; i >= 0; i--)
+    {
+      pending[numOfPending++] = i;
+    }
+
+    while (numOfPending > 0)
+    {
+      final int i = pending[--numOfPending];
+      if (!alive[i])
+      {
+        continue;
+      }
+      final int partner = findPartner(boxes, alive, grid, i, iouThresh);
+      if (partner >= 0)
+      {
+        alive[i] = false;
+        alive[partner] = false;
+        grid.remove(i);
+        grid.remove(partner);
+        final int m = boxes.add(
+            Math.min(boxes.scores[i], boxes.scores[partner]),
+            Math.min(boxes.left[i], boxes.left[partner]),
+            Math.min(boxes.top[i], boxes.top[partner]),
+            Math.max(boxes.right[i], boxes.right[partner]),
+            Math.max(boxes.bottom[i], boxes.bottom[partner]));
+        alive[m] = true;
+        grid.insert(m, boxes.left[m], boxes.top[m], boxes.right[m], boxes.bottom[m]);
+        pending[numOfPending++] = m;
+      }
+    }
+
+    final TextBoxes merged = new TextBoxes(size);
+    for (int i = 0; i < boxes.size; i++)
+    {
+      if (alive[i])
+      {
+        merged.add(boxes.scores[i], boxes.left[i], boxes.top[i], boxes.right[i],
+            boxes.bottom[i]);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * @return the first live box, other than {@code i}, to be merged with it, or -1 if there is none
+   */
+  protected static int findPartner(final TextBoxes boxes,
+                                   final boolean[] alive,
+                                   final BoxGrid grid,
+                                   final int i,
+                                   final float iouThresh)
+  {
+    if (iouThresh <= 0.0f)
+    {
+      // Even disjoint boxes are to be merged, so every box is a partner, overlapping or not.
+      for (int j = 0; j < boxes.size; j++)
+      {
+        if (j != i && alive[j])
+        {
+          return j;
+        }
+      }
+      return -1;
+    }
+    final int numOfFound =
+        grid.query(boxes.left[i], boxes.top[i], boxes.right[i], boxes.bottom[i]);
+    for (int k = 0; k < numOfFound; k++)
+    {
+      final int j = grid.found[k];
+      if (j != i && alive[j]
+          && iou(boxes.left[i], boxes.top[i], boxes.right[i], boxes.bottom[i],
+          boxes.left[j], boxes.top[j], boxes.right[j], boxes.bottom[j]) >= iouThresh)
+      {
+        return j;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return an empty grid covering every box, with cells about as large as the average box
+   */
+  protected BoxGrid grid()
+  {
+    float minX = Float.MAX_VALUE;
+    float minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE;
+    float maxY = -Float.MAX_VALUE;
+    double sumOfSides = 0.0;
+    for (int i = 0; i < size; i++)
+    {
+      minX = Math.min(minX, left[i]);
+      minY = Math.min(minY, top[i]);
+      maxX = Math.max(maxX, right[i]);
+      maxY = Math.max(maxY, bottom[i]);
+      sumOfSides += Math.max(right[i] - left[i], bottom[i] - top[i]);
+    }
+    if (size == 0)
+    {
+      return new BoxGrid(0, 0, 1, 1, 1);
+    }
+    return new BoxGrid(minX, minY, maxX, maxY, (float) (sumOfSides / size));
+  }
+
+  /**
+   * @return the area of the intersection of two boxes divided by the area of their union
+   */
+  protected static float iou(final float left1,
+                             final float top1,
+                             final float right1,
+                             final float bottom1,
+                             final float left2,
+                             final float top2,
+                             final float right2,
+                             final float bottom2)
+  {
+    final float intersectionWidth = Math.max(0, Math.min(right1, right2) - Math.max(left1, left2));
+    final float intersectionHeight =
+        Math.max(0, Math.min(bottom1, bottom2) - Math.max(top1, top2));
+    final float intersectionArea = intersectionWidth * intersectionHeight;
+    final float area1 = (right1 - left1) * (bottom1 - top1);
+    final float area2 = (right2 - left2) * (bottom2 - top2);
+    return intersectionArea / (area1 + area2 - intersectionArea);
+  }
+
+}
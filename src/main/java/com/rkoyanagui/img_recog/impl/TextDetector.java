@@ -0,0 +1,35 @@
+package com.rkoyanagui.img_recog.impl;
+
+/**
+ * Ways of finding the areas of an image where there may be text, to be recognised by Tesseract.
+ */
+public enum TextDetector
+{
+
+  /**
+   * The <a href="https://github.com/argman/EAST">EAST</a> neural network. Finds text on almost
+   * any background, at the cost of a forward pass through the network, which dominates the cost of
+   * most lookups.
+   */
+  EAST,
+  /**
+   * Groups the edges found by a morphological gradient into lines of text. Much cheaper than
+   * {@link #EAST}, and good enough for plain text on flat backgrounds, like most UI labels, but
+   * easily fooled by pictures and textures.
+   */
+  GRADIENT,
+  /**
+   * Groups maximally stable extremal regions (MSER), which usually are characters, into lines of
+   * text. Cheaper than {@link #EAST}, if not as cheap as {@link #GRADIENT}, and less fooled by
+   * textures.
+   */
+  MSER,
+  /**
+   * No separate text detector at all: Tesseract finds and recognises the text in a single pass, in
+   * sparse text page segmentation mode, and every word it reads is a box. Cheaper than {@link
+   * #EAST} followed by recognising each box, for cutouts already tight around some text, though
+   * not as good at finding text on busy backgrounds.
+   */
+  TESSERACT
+
+}
@@ -0,0 +1,211 @@
+package com.rkoyanagui.img_recog.impl;
+
+import com.rkoyanagui.img_recog.Padding;
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.features2d.MSER;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Classical, and cheap, alternatives to EAST for finding the areas of an image where there may be
+ * text. Both find the characters first, as a binary mask, and then join characters lying side by
+ * side into lines of text, by closing the gaps between them with a kernel as wide as a fraction of
+ * the typical character's height. Each line's score is how much of its bounding box the joined
+ * characters fill: lines of text are nearly solid, outlines and stray strokes are not.
+ */
+class TextProposals
+{
+
+  /** Characters shorter than this, in pixels, are deemed noise. */
+  protected static final int MIN_CHAR_HEIGHT = 6;
+  /** How wide a gap between characters is closed, as a fraction of the median character height. */
+  protected static final double JOIN_FACTOR = 0.6;
+  /** Lines filling less of their bounding box than this are not deemed text. */
+  protected static final float MIN_SOLIDITY = 0.4f;
+  /** Regions taller than this fraction of the image are not deemed characters. */
+  protected static final double MAX_CHAR_HEIGHT_FRACTION = 0.5;
+
+  protected TextProposals()
+  {
+  }
+
+  /**
+   * Finds characters as the edges of a morphological gradient, binarised with Otsu's method.
+   *
+   * @param img       the image to be OCR'ed
+   * @param padding   to add padding to the boxes' sides
+   * @param iouThresh the intersection-over-union bounding box overlap threshold
+   * @return a list of scores and bounding boxes of areas where there may be text, from top to
+   * bottom, and from left to right
+   */
+  protected static List<Pair<Float, Rectangle>> gradient(final Mat img,
+                                                         final Padding padding,
+                                                         final float iouThresh)
+  {
+    final Mat gray = gray(img);
+    final Mat edges = new Mat();
+    Imgproc.morphologyEx(gray, edges, Imgproc.MORPH_GRADIENT,
+        Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3)));
+    final Mat mask = new Mat();
+    Imgproc.threshold(edges, mask, 0, 255, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+    return joinCharacters(mask, padding, iouThresh);
+  }
+
+  /**
+   * Finds characters as maximally stable extremal regions, each filled in as its convex hull.
+   *
+   * @param img       the image to be OCR'ed
+   * @param padding   to add padding to the boxes' sides
+   * @param iouThresh the intersection-over-union bounding box overlap threshold
+   * @return a list of scores and bounding boxes of areas where there may be text, from top to
+   * bottom, and from left to right
+   */
+  protected static List<Pair<Float, Rectangle>> mser(final Mat img,
+                                                     final Padding padding,
+                                                     final float iouThresh)
+  {
+    final Mat gray = gray(img);
+    final List<MatOfPoint> regions = new ArrayList<>();
+    final MatOfRect bboxes = new MatOfRect();
+    MSER.create().detectRegions(gray, regions, bboxes);
+
+    final Mat mask = Mat.zeros(gray.size(), CvType.CV_8UC1);
+    final Rect[] rects = bboxes.toArray();
+    final double maxCharHeight = MAX_CHAR_HEIGHT_FRACTION * gray.rows();
+    for (int i = 0; i < regions.size(); i++)
+    {
+      if (rects[i].height > maxCharHeight)
+      {
+        continue;
+      }
+      final MatOfPoint region = regions.get(i);
+      final Point[] points = region.toArray();
+      final MatOfInt hull = new MatOfInt();
+      Imgproc.convexHull(region, hull);
+      final Point[] hullPoints = Arrays.stream(hull.toArray())
+          .mapToObj(k -> points[k])
+          .toArray(Point[]::new);
+      Imgproc.fillConvexPoly(mask, new MatOfPoint(hullPoints), new Scalar(255));
+    }
+    return joinCharacters(mask, padding, iouThresh);
+  }
+
+  /**
+   * Joins the characters in a binary mask into lines of text. Lines are told apart as connected
+   * components, rather than as external contours, so that text inside an outlined button is not
+   * swallowed by the button's outline.
+   *
+   * @param mask      non-zero wherever there are characters
+   * @param padding   to add padding to the boxes' sides
+   * @param iouThresh the intersection-over-union bounding box overlap threshold
+   * @return a list of scores and bounding boxes of lines of text, from top to bottom, and from left
+   * to right
+   */
+  protected static List<Pair<Float, Rectangle>> joinCharacters(final Mat mask,
+                                                               final Padding padding,
+                                                               final float iouThresh)
+  {
+    final int charHeight = medianCharHeight(mask);
+    final int joinWidth = Math.max(3, (int) Math.round(JOIN_FACTOR * charHeight));
+    final Mat lines = new Mat();
+    Imgproc.morphologyEx(mask, lines, Imgproc.MORPH_CLOSE,
+        Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(joinWidth, 1)));
+
+    final Mat labels = new Mat();
+    final Mat stats = new Mat();
+    final Mat centroids = new Mat();
+    final int n = Imgproc.connectedComponentsWithStats(lines, labels, stats, centroids);
+    final int[] stat = new int[Imgproc.CC_STAT_MAX];
+    // Dots over i's and j's, accents, punctuation and noise are shorter than whole lines.
+    final int minLineHeight = Math.max(MIN_CHAR_HEIGHT, charHeight / 2);
+    final TextBoxes boxes = new TextBoxes(n);
+    // Label 0 is the background.
+    for (int label = 1; label < n; label++)
+    {
+      stats.get(label, 0, stat);
+      final int x = stat[Imgproc.CC_STAT_LEFT];
+      final int y = stat[Imgproc.CC_STAT_TOP];
+      final int width = stat[Imgproc.CC_STAT_WIDTH];
+      final int height = stat[Imgproc.CC_STAT_HEIGHT];
+      if (height < minLineHeight)
+      {
+        continue;
+      }
+      final float solidity = (float) stat[Imgproc.CC_STAT_AREA] / ((float) width * height);
+      if (solidity >= MIN_SOLIDITY)
+      {
+        // TextBoxes#boundingRect adds a pixel to each side's length, so it is taken off here.
+        boxes.add(solidity, x, y, x + width - 1.0f, y + height - 1.0f);
+      }
+    }
+    return TesseractOcrMatcher.toRectangles(boxes, new Point(1.0, 1.0), mask.size(), padding,
+        iouThresh);
+  }
+
+  /**
+   * @return the median height of the connected components in a binary mask that are tall enough to
+   * be characters, or {@link #MIN_CHAR_HEIGHT} if there are none
+   */
+  protected static int medianCharHeight(final Mat mask)
+  {
+    final Mat labels = new Mat();
+    final Mat stats = new Mat();
+    final Mat centroids = new Mat();
+    final int n = Imgproc.connectedComponentsWithStats(mask, labels, stats, centroids);
+    final int[] heights = new int[n];
+    int numOfHeights = 0;
+    final int[] stat = new int[1];
+    // Label 0 is the background.
+    for (int label = 1; label < n; label++)
+    {
+      stats.get(label, Imgproc.CC_STAT_HEIGHT, stat);
+      if (stat[0] >= MIN_CHAR_HEIGHT)
+      {
+        heights[numOfHeights++] = stat[0];
+      }
+    }
+    if (numOfHeights == 0)
+    {
+      return MIN_CHAR_HEIGHT;
+    }
+    Arrays.sort(heights, 0, numOfHeights);
+    return heights[numOfHeights / 2];
+  }
+
+  /**
+   * @return the image in shades of grey, with 8 bits per pixel
+   */
+  protected static Mat gray(final Mat img)
+  {
+    final Mat gray = new Mat();
+    switch (img.channels())
+    {
+      case 3:
+        Imgproc.cvtColor(img, gray, Imgproc.COLOR_BGR2GRAY);
+        break;
+      case 4:
+        Imgproc.cvtColor(img, gray, Imgproc.COLOR_BGRA2GRAY);
+        break;
+      default:
+        img.copyTo(gray);
+    }
+    if (gray.depth() != CvType.CV_8U)
+    {
+      gray.convertTo(gray, CvType.CV_8U);
+    }
+    return gray;
+  }
+
+}
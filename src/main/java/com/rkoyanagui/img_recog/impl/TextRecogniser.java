@@ -0,0 +1,23 @@
+package com.rkoyanagui.img_recog.impl;
+
+/**
+ * Ways of recognising the text inside the areas of an image where text was detected.
+ */
+public enum TextRecogniser
+{
+
+  /**
+   * <a href="https://tesseract-ocr.github.io/">Tesseract</a>'s LSTM neural network. Reads text in
+   * any font, in the languages it was trained on, at the cost of tens to hundreds of milliseconds
+   * per area.
+   */
+  TESSERACT,
+  /**
+   * Splits each area into characters, and tells which character each one is by its correlation
+   * with the glyphs in a glyph set, captured from the app under test by {@link GlyphSetBuilder}.
+   * Reads only the characters, and the font, in the glyph set, like the digits of a balance or a
+   * counter, but in milliseconds. Characters touching each other are misread.
+   */
+  GLYPHS
+
+}
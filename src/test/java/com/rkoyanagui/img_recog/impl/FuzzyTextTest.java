@@ -0,0 +1,71 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+class FuzzyTextTest
+{
+
+  @Test
+  void ignoreCharactersOcrConfuses()
+  {
+    final Predicate<String> login = OcrTest.FUZZY_EQUALS.predicate("Login", 0);
+
+    assertThat(login.test("L0gin "), is(true));
+    assertThat(login.test("LOGIN"), is(true));
+    assertThat(login.test("|ogin"), is(true));
+    assertThat(login.test("Logon"), is(false));
+    assertThat(OcrTest.FUZZY_EQUALS.predicate("bag", 0).test("8a9"), is(false));
+    assertThat(OcrTest.FUZZY_EQUALS.predicate("sign", 0).test("5i9n"), is(false));
+  }
+
+  @Test
+  void allowUpToTheMaximumEditDistance()
+  {
+    final Predicate<String> equals = OcrTest.FUZZY_EQUALS.predicate("Entrar", 1);
+    final Predicate<String> contains = OcrTest.FUZZY_CONTAINS.predicate("Entrar", 1);
+
+    assertThat(equals.test("Entar"), is(true));
+    assertThat(equals.test("Emtrar"), is(true));
+    assertThat(equals.test("Emtar"), is(false));
+    assertThat(contains.test("Clique para Entar na conta"), is(true));
+    assertThat(contains.test("Clique para Emtar na conta"), is(false));
+    assertThat(OcrTest.FUZZY_CONTAINS.predicate("Entrar", 2).test("Clique para Emtar"), is(true));
+  }
+
+  @Test
+  void agreeWithDynamicProgramming()
+  {
+    final Random random = new Random(42);
+    for (int n = 0; n < 2000; n++)
+    {
+      final String pattern = randomText(random, 1 + random.nextInt(70));
+      final String text = randomText(random, random.nextInt(90));
+      final FuzzyText fuzzy = new FuzzyText(pattern, Integer.MAX_VALUE / 2);
+      for (final boolean substring : new boolean[]{false, true})
+      {
+        final int expected = fuzzy.dynamicProgramming(text, substring);
+        if (pattern.length() <= Long.SIZE)
+        {
+          assertThat(pattern + " " + text, fuzzy.myers(text, substring), is(expected));
+        }
+        assertThat(fuzzy.distance(text, substring), is(expected));
+      }
+    }
+  }
+
+  protected static String randomText(final Random random, final int length)
+  {
+    final StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++)
+    {
+      text.append("abc1é".charAt(random.nextInt(5)));
+    }
+    return text.toString();
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+import com.rkoyanagui.img_recog.ImgUtils;
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+class GlyphOcrTest
+{
+
+  protected static final Scalar LIGHT = new Scalar(240, 240, 240);
+  protected static final Scalar DARK = new Scalar(20, 20, 20);
+
+  protected static GlyphSet glyphs;
+
+  @BeforeAll
+  static void buildGlyphSet()
+  {
+    ImgUtils.initOpenCv();
+    final List<Pair<String, Mat>> samples = new ArrayList<>();
+    samples.addAll(GlyphSetBuilder.glyphs(line("0123456789", 1.0, LIGHT, DARK), "0123456789"));
+    samples.addAll(GlyphSetBuilder.glyphs(line("R$ 1.234,56", 1.0, LIGHT, DARK), "R$ 1.234,56"));
+    assertThat(samples.size(), is(20));
+    glyphs = new GlyphSet(samples);
+  }
+
+  @Test
+  void readTextInTheGlyphSetsFont()
+  {
+    assertReads("R$ 9.870,12", 1.0, LIGHT, DARK);
+    assertReads("4096 17", 0.8, LIGHT, DARK);
+  }
+
+  @Test
+  void readLightTextOnDarkBackground()
+  {
+    assertReads("R$ 9.870,12", 1.3, new Scalar(30, 120, 220), new Scalar(255, 255, 255));
+  }
+
+  @Test
+  void nameGlyphFilesAfterTheirCharacters()
+  {
+    assertThat(GlyphSet.fileName("4", 0), is("0034.png"));
+    assertThat(GlyphSet.character(GlyphSet.fileName("$", 2)), is("$"));
+  }
+
+  protected static void assertReads(final String text,
+                                    final double scale,
+                                    final Scalar background,
+                                    final Scalar colour)
+  {
+    final Mat img = line(text, scale, background, colour);
+
+    final Pair<String, Integer> result = GlyphOcr.recognise(img,
+        Collections.singletonList(new Rectangle(0, 0, img.cols(), img.rows())), glyphs).get(0);
+
+    assertThat(result.a, is(text));
+    assertThat(result.b, greaterThanOrEqualTo(75));
+  }
+
+  protected static Mat line(final String text,
+                            final double scale,
+                            final Scalar background,
+                            final Scalar colour)
+  {
+    final Mat img = new Mat(60, 40 + (int) (30 * scale * text.length()), CvType.CV_8UC3,
+        background);
+    Imgproc.putText(img, text, new Point(10, 45), Imgproc.FONT_HERSHEY_SIMPLEX, scale, colour, 2);
+    return img;
+  }
+
+}
@@ -0,0 +1,69 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ModelRegistryTest
+{
+
+  @Test
+  void loadOnceAndCloseWhenLastHolderReleases()
+  {
+    final AtomicInteger loads = new AtomicInteger();
+    final AtomicInteger closes = new AtomicInteger();
+    final List<Object> key = Arrays.asList(ModelRegistryTest.class, "shared");
+
+    final Object first = ModelRegistry.acquire(key, () -> {
+      loads.incrementAndGet();
+      return new Object();
+    }, m -> closes.incrementAndGet());
+    final Object second = ModelRegistry.acquire(key, () -> {
+      loads.incrementAndGet();
+      return new Object();
+    }, m -> closes.incrementAndGet());
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(loads.get(), is(1));
+
+    ModelRegistry.release(first);
+    assertThat(closes.get(), is(0));
+    ModelRegistry.release(second);
+    assertThat(closes.get(), is(1));
+
+    final Object third = ModelRegistry.acquire(key, Object::new, m -> closes.incrementAndGet());
+    assertThat(third, is(not(sameInstance(first))));
+    ModelRegistry.release(third);
+  }
+
+  @Test
+  void forgetModelsThatFailToLoad()
+  {
+    final List<Object> key = Arrays.asList(ModelRegistryTest.class, "missing");
+
+    try
+    {
+      ModelRegistry.acquire(key, () -> {
+        throw new IllegalStateException("missing model file");
+      }, m -> {
+      });
+    }
+    catch (IllegalStateException x)
+    {
+      // Expected.
+    }
+
+    final Object model = ModelRegistry.acquire(key, Object::new, m -> {
+    });
+    assertThat(ModelRegistry.ENTRIES.containsKey(key), is(true));
+    ModelRegistry.release(model);
+    assertThat(ModelRegistry.ENTRIES.containsKey(key), is(false));
+  }
+
+}
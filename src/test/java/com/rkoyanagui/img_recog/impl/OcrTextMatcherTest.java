@@ -0,0 +1,60 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.rkoyanagui.img_recog.OcrMatchingBy;
+import org.junit.jupiter.api.Test;
+
+class OcrTextMatcherTest
+{
+
+  @Test
+  void cleanUpWhatTheNamesSay()
+  {
+    assertThat(OcrCleanUp.REMOVE_ALL_DIGITS.f.apply("R$ 9,87"), is("R$ ,"));
+    assertThat(OcrCleanUp.REMOVE_ALL_NON_DIGITS.f.apply("R$ 9,87"), is("987"));
+    assertThat(OcrCleanUp.REMOVE_ALL_SPACES.f.apply("R$ 9,87"), is("R$9,87"));
+    assertThat(OcrCleanUp.REMOVE_ALL_WORD_CHARS.f.apply("R$ 9,87"), is("$ ,"));
+    assertThat(OcrCleanUp.REMOVE_ALL_NON_WORD_CHARS.f.apply("R$ 9,87"), is("R987"));
+  }
+
+  @Test
+  void compileEachLocatorOnce()
+  {
+    final OcrTextMatcher matcher =
+        OcrTextMatcher.of(params("R\\d+", OcrTest.REGEX, OcrCleanUp.REMOVE_ALL_NON_WORD_CHARS));
+
+    assertThat(matcher.matches("R$ 9,87"), is(true));
+    assertThat(matcher.matches("US$ 9,87"), is(false));
+    assertThat(OcrTextMatcher.of(params("R\\d+", OcrTest.REGEX, OcrCleanUp.NONE,
+        OcrCleanUp.REMOVE_ALL_NON_WORD_CHARS)), is(sameInstance(matcher)));
+    assertThat(OcrTextMatcher.of(params("R\\d+", OcrTest.REGEX, OcrCleanUp.TRIM)),
+        is(not(sameInstance(matcher))));
+  }
+
+  @Test
+  void dropCleanUpsThatChangeNothing()
+  {
+    assertThat(OcrTextMatcher.essential(new OcrCleanUp[]{OcrCleanUp.NONE, OcrCleanUp.TRIM,
+            OcrCleanUp.TRIM, OcrCleanUp.REMOVE_ALL_SPACES, OcrCleanUp.TRIM}),
+        contains(OcrCleanUp.TRIM, OcrCleanUp.REMOVE_ALL_SPACES, OcrCleanUp.TRIM));
+    assertThat(OcrTextMatcher.of(params("SENHA", OcrTest.CONTAINS_IGNORE_CASE)).matches(
+        "Esqueci a senha"), is(true));
+  }
+
+  protected static OcrMatchingBy params(final String searchTerm,
+                                        final OcrTest test,
+                                        final OcrCleanUp... cleanUps)
+  {
+    return OcrMatchingBy.builder()
+        .searchTerm(searchTerm)
+        .ocrTest(test)
+        .cleanUp(cleanUps)
+        .build();
+  }
+
+}
@@ -0,0 +1,174 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import com.rkoyanagui.img_recog.OcrMatchingBy;
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import net.sourceforge.tess4j.Word;
+import org.junit.jupiter.api.Test;
+
+class OcrWordIndexTest
+{
+
+  protected static final List<Word> WORDS = Arrays.asList(
+      word("Entrar"),
+      word("Esqueci minha senha"),
+      word("ENTRAR"),
+      word("Criar conta"),
+      word("Senha"),
+      word("entrar com Google"),
+      word("12:45"),
+      word(null),
+      word("Straße"));
+
+  @Test
+  void findEqualTexts()
+  {
+    final OcrWordIndex index = index(WORDS);
+
+    assertThat(texts(find(index, params("Entrar", OcrTest.EQUALS))), contains("Entrar"));
+    assertThat(texts(find(index, params("entrar", OcrTest.EQUALS_IGNORE_CASE))),
+        contains("Entrar", "ENTRAR"));
+    assertThat(find(index, params("Entra", OcrTest.EQUALS)), is(empty()));
+  }
+
+  @Test
+  void findContainedTexts()
+  {
+    final OcrWordIndex index = index(WORDS);
+
+    assertThat(texts(find(index, params("senha", OcrTest.CONTAINS))),
+        contains("Esqueci minha senha"));
+    assertThat(texts(find(index, params("SENHA", OcrTest.CONTAINS_IGNORE_CASE))),
+        contains("Esqueci minha senha", "Senha"));
+    // Shorter than a trigram.
+    assertThat(texts(find(index, params("45", OcrTest.CONTAINS))), contains("12:45"));
+  }
+
+  @Test
+  void findLikeBruteForce()
+  {
+    final OcrWordIndex index = index(WORDS);
+    final List<String> searchTerms = Arrays.asList("Entrar", "entrar", "ENTRAR", "trar", "senha",
+        "SENHA", "ta", "x", "STRASSE", "straße", "Esqueci minha senha", "12:45", "conta ");
+
+    for (final OcrTest test : OcrTest.values())
+    {
+      for (final String searchTerm : searchTerms)
+      {
+        for (final OcrCleanUp cleanUp : OcrCleanUp.values())
+        {
+          final OcrMatchingBy params = params(searchTerm, test, cleanUp);
+          assertThat(test + " " + searchTerm + " " + cleanUp,
+              texts(find(index, params)), is(texts(bruteForce(params))));
+        }
+      }
+    }
+  }
+
+  @Test
+  void pruneBoxesTooShortOrLongForEqualTexts()
+  {
+    // Boxes 20 pixels high fit about one character per 10 pixels of width.
+    final OcrWordIndex index = index(Arrays.asList(
+        word("OK", 20), word("Entrar", 60), word("Esqueci minha senha", 190), word("E", 5)));
+
+    assertThat(index.plausible(params("Entrar", OcrTest.EQUALS)), is(new int[]{1}));
+    assertThat(index.plausible(params("entrar", OcrTest.EQUALS_IGNORE_CASE)), is(new int[]{1}));
+    // Removing characters may leave a longer text as long as the search term.
+    assertThat(index.plausible(params("Entrar", OcrTest.EQUALS, OcrCleanUp.REMOVE_ALL_SPACES)),
+        is(new int[]{1, 2}));
+    assertThat(index.plausible(params("Entrar", OcrTest.CONTAINS)), is(new int[]{0, 1, 2, 3}));
+    assertThat(index.plausible(OcrMatchingBy.builder()
+            .searchTerm("Entrar")
+            .ocrTest(OcrTest.EQUALS)
+            .lengthTolerance(3.0)
+            .build()),
+        is(new int[]{0, 1, 2}));
+  }
+
+  @Test
+  void findOnlyAmongRecognisedBoxes()
+  {
+    final OcrWordIndex index = new OcrWordIndex(null, boxes(WORDS));
+    index.put(2, WORDS.get(2), 90);
+
+    assertThat(index.pending(new int[]{0, 2, 4}), is(new int[]{0, 4}));
+    assertThat(texts(index.find(params("entrar", OcrTest.EQUALS_IGNORE_CASE), new int[]{0, 2})),
+        contains("ENTRAR"));
+    assertThat(index.find(params("entrar", OcrTest.EQUALS_IGNORE_CASE), new int[]{0}),
+        is(empty()));
+    assertThat(texts(index.words()), contains("ENTRAR"));
+  }
+
+  protected static OcrWordIndex index(final List<Word> words)
+  {
+    final OcrWordIndex index = new OcrWordIndex(null, boxes(words));
+    for (int i = 0; i < words.size(); i++)
+    {
+      index.put(i, words.get(i), 90);
+    }
+    return index;
+  }
+
+  protected static List<Pair<Float, Rectangle>> boxes(final List<Word> words)
+  {
+    return words.stream()
+        .map(w -> new Pair<>(w.getConfidence(), w.getBoundingBox()))
+        .collect(Collectors.toList());
+  }
+
+  protected static List<Word> find(final OcrWordIndex index, final OcrMatchingBy params)
+  {
+    return index.find(params, IntStream.range(0, index.size()).toArray());
+  }
+
+  protected static List<Word> bruteForce(final OcrMatchingBy params)
+  {
+    final Predicate<String> searchPredicate =
+        params.getOcrTest().predicateFactory.apply(params.getSearchTerm());
+    final Function<String, String> cleanUp =
+        TesseractOcrMatcher.composeTextCleaner(params.getCleanUp());
+    return WORDS.stream()
+        .filter(w -> w.getText() != null)
+        .filter(w -> searchPredicate.test(cleanUp.apply(w.getText())))
+        .collect(Collectors.toList());
+  }
+
+  protected static OcrMatchingBy params(final String searchTerm,
+                                        final OcrTest test,
+                                        final OcrCleanUp... cleanUps)
+  {
+    return OcrMatchingBy.builder()
+        .searchTerm(searchTerm)
+        .ocrTest(test)
+        .cleanUp(cleanUps)
+        .build();
+  }
+
+  protected static Word word(final String text)
+  {
+    return new Word(text, 0.9f, new Rectangle(0, 0, 10, 10));
+  }
+
+  protected static Word word(final String text, final int width)
+  {
+    return new Word(text, 0.9f, new Rectangle(0, 0, width, 20));
+  }
+
+  protected static List<String> texts(final List<Word> words)
+  {
+    return words.stream().map(Word::getText).collect(Collectors.toList());
+  }
+
+}
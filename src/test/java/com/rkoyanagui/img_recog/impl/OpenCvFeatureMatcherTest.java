@@ -0,0 +1,113 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import com.rkoyanagui.img_recog.FeatureMatchingBy;
+import com.rkoyanagui.img_recog.ImgUtils;
+import com.rkoyanagui.img_recog.impl.ImgRecogConst.FeatureMatching;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.Rectangle;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+class OpenCvFeatureMatcherTest
+{
+
+  protected static final int QUERY_WIDTH = 200;
+  protected static final int QUERY_HEIGHT = 150;
+
+  @BeforeAll
+  static void initOpenCv()
+  {
+    ImgUtils.initOpenCv();
+  }
+
+  @Test
+  void findEveryCopyOfTheQueryImage()
+  {
+    final Mat query = texture(new Random(7));
+    final Mat train = new Mat(420, 980, CvType.CV_8UC3, new Scalar(128, 128, 128));
+    final Point[] copies = {new Point(40, 30), new Point(380, 220), new Point(720, 60)};
+    for (final Point copy : copies)
+    {
+      query.copyTo(train.submat(
+          new Rect((int) copy.x, (int) copy.y, QUERY_WIDTH, QUERY_HEIGHT)));
+    }
+
+    final List<Rectangle> rectangles = OpenCvFeatureMatcher.matchAllFeatures(query, train,
+            params(), new FrameCache(), false)
+        .stream()
+        .map(FeatureMatchResult::getRectangle)
+        .sorted(Comparator.comparingInt(Rectangle::getX))
+        .collect(Collectors.toList());
+
+    assertThat(rectangles, hasSize(copies.length));
+    for (int i = 0; i < copies.length; i++)
+    {
+      final Rectangle rectangle = rectangles.get(i);
+      assertThat((double) rectangle.getX(), closeTo(copies[i].x, 5.0));
+      assertThat((double) rectangle.getY(), closeTo(copies[i].y, 5.0));
+      assertThat((double) rectangle.getWidth(), closeTo(QUERY_WIDTH, 10.0));
+      assertThat((double) rectangle.getHeight(), closeTo(QUERY_HEIGHT, 10.0));
+    }
+  }
+
+  /**
+   * @return a picture full of corners for ORB to find, made of random shapes and text
+   */
+  protected static Mat texture(final Random random)
+  {
+    final Mat img = new Mat(QUERY_HEIGHT, QUERY_WIDTH, CvType.CV_8UC3, new Scalar(235, 235, 235));
+    for (int i = 0; i < 40; i++)
+    {
+      final Scalar colour =
+          new Scalar(random.nextInt(200), random.nextInt(200), random.nextInt(200));
+      final Point corner = new Point(random.nextInt(QUERY_WIDTH), random.nextInt(QUERY_HEIGHT));
+      final Point opposite = new Point(corner.x + 5 + random.nextInt(30),
+          corner.y + 5 + random.nextInt(30));
+      if (i % 2 == 0)
+      {
+        Imgproc.rectangle(img, corner, opposite, colour, -1);
+      }
+      else
+      {
+        Imgproc.circle(img, corner, 4 + random.nextInt(12), colour, 2);
+      }
+    }
+    Imgproc.putText(img, "R$ 42,17", new Point(20, 90), Imgproc.FONT_HERSHEY_SIMPLEX, 1.0,
+        new Scalar(10, 10, 10), 2);
+    return img;
+  }
+
+  protected static FeatureMatchingBy params()
+  {
+    return FeatureMatchingBy.builder()
+        .templateFilename("query.png")
+        .queryImgFeatures(FeatureMatching.NUM_OF_QUERY_FEATURES)
+        .trainImgFeatures(FeatureMatching.NUM_OF_TRAIN_FEATURES)
+        .minNumOfMatches(FeatureMatching.MIN_NUM_OF_MATCHES)
+        .numOfMatchesToKeep(FeatureMatching.NUM_OF_MATCHES_TO_KEEP)
+        .scaleFactor(FeatureMatching.SCALE_FACTOR)
+        .nlevels(FeatureMatching.N_LEVELS)
+        .edgeThreshold(FeatureMatching.EDGE_THRESHOLD)
+        .firstLevel(FeatureMatching.FIRST_LEVEL)
+        .wtaK(FeatureMatching.WTA_K)
+        .scoreType(FeatureMatching.SCORE_TYPE)
+        .patchSize(FeatureMatching.PATCH_SIZE)
+        .fastThreshold(FeatureMatching.FAST_THRESHOLD)
+        .descriptorMatching(DescriptorMatching.BRUTE_FORCE)
+        .build();
+  }
+
+}
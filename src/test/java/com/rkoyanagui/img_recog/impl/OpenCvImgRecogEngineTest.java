@@ -0,0 +1,242 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static com.rkoyanagui.img_recog.impl.ImageFilter.ADAPTIVE_BINARY_THRESHOLD;
+import static com.rkoyanagui.img_recog.impl.ImageFilter.GRAY;
+import static com.rkoyanagui.img_recog.impl.ImageFilter.MORPH_DILATE;
+import static com.rkoyanagui.img_recog.impl.ImageFilter.NEGATIVE;
+import static com.rkoyanagui.img_recog.impl.ImageFilter.OTSU_BINARY_THRESHOLD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.rkoyanagui.img_recog.ImgRecogBy;
+import com.rkoyanagui.img_recog.OcrMatchingBy;
+import com.rkoyanagui.img_recog.TemplateMatchingBy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Test;
+
+class OpenCvImgRecogEngineTest
+{
+
+  @Test
+  void copyLocatorForEachFilterVariant()
+  {
+    final OcrMatchingBy params = OcrMatchingBy.builder()
+        .searchTerm("Entrar")
+        .filters(new ImageFilter[]{GRAY})
+        .filterVariants(new ImageFilter[][]{{GRAY, NEGATIVE}, {GRAY, OTSU_BINARY_THRESHOLD}})
+        .build();
+
+    final List<ImgRecogBy> variants = OpenCvImgRecogEngine.filterVariants(params);
+
+    assertThat(variants.size(), is(3));
+    assertThat(variants.get(0), is(params));
+    assertThat(((OcrMatchingBy) variants.get(1)).getFilters(),
+        is(new ImageFilter[]{GRAY, NEGATIVE}));
+    assertThat(((OcrMatchingBy) variants.get(2)).getSearchTerm(), is("Entrar"));
+    assertThat(((OcrMatchingBy) variants.get(2)).getFilterVariants(), is(nullValue()));
+  }
+
+  @Test
+  void firstVariantToFindTheElementWins()
+  {
+    final OcrMatchingBy params = OcrMatchingBy.builder()
+        .searchTerm("Entrar")
+        .filters(new ImageFilter[]{GRAY})
+        .filterVariants(new ImageFilter[][]{{NEGATIVE}, {ADAPTIVE_BINARY_THRESHOLD}})
+        .build();
+    try (final OpenCvImgRecogEngine engine = new OpenCvImgRecogEngine(null))
+    {
+      final Optional<ImageFilter> winner = engine.raceFilterVariants(
+          OpenCvImgRecogEngine.filterVariants(params),
+          v -> {
+            final ImageFilter filter = ((OcrMatchingBy) v).getFilters()[0];
+            switch (filter)
+            {
+              case GRAY:
+                // Misses.
+                return Optional.empty();
+              case NEGATIVE:
+                sleep(500);
+                return Optional.of(filter);
+              default:
+                sleep(50);
+                return Optional.of(filter);
+            }
+          },
+          Optional::isPresent, Optional.empty());
+
+      assertThat(winner, is(Optional.of(ADAPTIVE_BINARY_THRESHOLD)));
+    }
+  }
+
+  @Test
+  void raceTemplateMatchingFilterVariants()
+  {
+    final TemplateMatchingBy params = TemplateMatchingBy.builder()
+        .templateFilename("button.png")
+        .preResizingFilters(new ImageFilter[]{GRAY})
+        .postResizingFilters(new ImageFilter[]{MORPH_DILATE})
+        .filterVariants(new ImageFilter[][]{{GRAY, NEGATIVE}, {GRAY, OTSU_BINARY_THRESHOLD}})
+        .build();
+    try (final OpenCvImgRecogEngine engine = new OpenCvImgRecogEngine(null))
+    {
+      final List<ImgRecogBy> variants = OpenCvImgRecogEngine.filterVariants(params);
+      final Optional<TemplateMatchingBy> winner = engine.raceFilterVariants(variants,
+          v -> {
+            final ImageFilter[] filters = ((TemplateMatchingBy) v).getPreResizingFilters();
+            if (filters.length == 1)
+            {
+              // Misses.
+              return Optional.empty();
+            }
+            sleep(filters[1] == NEGATIVE ? 500 : 50);
+            return Optional.of((TemplateMatchingBy) v);
+          },
+          Optional::isPresent, Optional.empty());
+
+      assertThat(variants.size(), is(3));
+      assertThat(winner.isPresent(), is(true));
+      assertThat(winner.get().getPreResizingFilters(),
+          is(new ImageFilter[]{GRAY, OTSU_BINARY_THRESHOLD}));
+      assertThat(winner.get().getPostResizingFilters(), is(new ImageFilter[]{MORPH_DILATE}));
+      assertThat(winner.get().getTemplateFilename(), is("button.png"));
+      assertThat(winner.get().getFilterVariants(), is(nullValue()));
+    }
+  }
+
+  @Test
+  void letLosingVariantFinishRecognitionUnderWay() throws InterruptedException
+  {
+    final OcrMatchingBy params = OcrMatchingBy.builder()
+        .searchTerm("Entrar")
+        .filters(new ImageFilter[]{GRAY})
+        .filterVariants(new ImageFilter[][]{{NEGATIVE}})
+        .build();
+    final ExecutorService tesseractThreads = Executors.newFixedThreadPool(1);
+    final CountDownLatch isRecognising = new CountDownLatch(1);
+    final CountDownLatch isLoserDone = new CountDownLatch(1);
+    final AtomicBoolean arePixelsReleased = new AtomicBoolean();
+    final AtomicBoolean werePixelsReadAfterRelease = new AtomicBoolean();
+    final AtomicBoolean wasLoserInterrupted = new AtomicBoolean();
+    try (final OpenCvImgRecogEngine engine = new OpenCvImgRecogEngine(null))
+    {
+      final Optional<ImageFilter> winner = engine.raceFilterVariants(
+          OpenCvImgRecogEngine.filterVariants(params),
+          v -> {
+            final ImageFilter filter = ((OcrMatchingBy) v).getFilters()[0];
+            if (filter == NEGATIVE)
+            {
+              awaitUninterruptibly(isRecognising);
+              return Optional.of(filter);
+            }
+            // Like TesseractOcrMatcher#doOCR, which releases the pixels once Tesseract returns.
+            try
+            {
+              TesseractPool.doRuns(tesseractThreads,
+                  Collections.<Callable<List<String>>>singletonList(() -> {
+                    isRecognising.countDown();
+                    sleep(300);
+                    werePixelsReadAfterRelease.set(arePixelsReleased.get());
+                    return Collections.singletonList("Entrar");
+                  }));
+              return Optional.empty();
+            }
+            catch (TesseractException x)
+            {
+              wasLoserInterrupted.set(true);
+              return Optional.empty();
+            }
+            finally
+            {
+              arePixelsReleased.set(true);
+              isLoserDone.countDown();
+            }
+          },
+          Optional::isPresent, Optional.empty());
+
+      assertThat(winner, is(Optional.of(NEGATIVE)));
+      assertThat(isLoserDone.await(5, TimeUnit.SECONDS), is(true));
+      assertThat(wasLoserInterrupted.get(), is(false));
+      assertThat(werePixelsReadAfterRelease.get(), is(false));
+    }
+    finally
+    {
+      tesseractThreads.shutdownNow();
+    }
+  }
+
+  @Test
+  void closeOnceLosingVariantsHaveFinished()
+  {
+    final OcrMatchingBy params = OcrMatchingBy.builder()
+        .searchTerm("Entrar")
+        .filters(new ImageFilter[]{GRAY})
+        .filterVariants(new ImageFilter[][]{{NEGATIVE}})
+        .build();
+    final AtomicBoolean isLoserDone = new AtomicBoolean();
+    final AtomicBoolean wasLoserInterrupted = new AtomicBoolean();
+    final OpenCvImgRecogEngine engine = new OpenCvImgRecogEngine(null);
+    final Optional<ImageFilter> winner = engine.raceFilterVariants(
+        OpenCvImgRecogEngine.filterVariants(params),
+        v -> {
+          final ImageFilter filter = ((OcrMatchingBy) v).getFilters()[0];
+          if (filter == NEGATIVE)
+          {
+            return Optional.of(filter);
+          }
+          // Like a variant inside native code, using the OCR models.
+          try
+          {
+            Thread.sleep(300);
+          }
+          catch (InterruptedException x)
+          {
+            wasLoserInterrupted.set(true);
+          }
+          isLoserDone.set(true);
+          return Optional.empty();
+        },
+        Optional::isPresent, Optional.empty());
+
+    engine.close();
+
+    assertThat(winner, is(Optional.of(NEGATIVE)));
+    assertThat(isLoserDone.get(), is(true));
+    assertThat(wasLoserInterrupted.get(), is(false));
+  }
+
+  protected static void awaitUninterruptibly(final CountDownLatch latch)
+  {
+    try
+    {
+      latch.await();
+    }
+    catch (InterruptedException x)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  protected static void sleep(final long millis)
+  {
+    try
+    {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException x)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
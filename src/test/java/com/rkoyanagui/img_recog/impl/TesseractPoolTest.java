@@ -0,0 +1,74 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TesseractPoolTest
+{
+
+  protected ExecutorService executor;
+
+  @BeforeEach
+  void startThreads()
+  {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterEach
+  void stopThreads()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void concatenateTheResultsOfEveryRun() throws TesseractException
+  {
+    final List<Callable<List<String>>> runs = Arrays.asList(
+        () -> Arrays.asList("a", "b"),
+        () -> Collections.singletonList("c"));
+
+    assertThat(TesseractPool.doRuns(executor, runs), contains("a", "b", "c"));
+  }
+
+  @Test
+  void waitForRunsUnderWayBeforeThrowing()
+  {
+    final CountDownLatch isSlowRunUnderWay = new CountDownLatch(1);
+    final AtomicBoolean isSlowRunFinished = new AtomicBoolean();
+    final List<Callable<List<String>>> runs = Arrays.asList(
+        () -> {
+          isSlowRunUnderWay.await();
+          throw new TesseractException("Recognition failed");
+        },
+        () -> {
+          isSlowRunUnderWay.countDown();
+          // Like a handle inside native code, which cannot be interrupted.
+          final long until = System.currentTimeMillis() + 300;
+          while (System.currentTimeMillis() < until)
+          {
+            Thread.yield();
+          }
+          isSlowRunFinished.set(true);
+          return Collections.singletonList("slow");
+        });
+
+    assertThrows(TesseractException.class, () -> TesseractPool.doRuns(executor, runs));
+    assertThat(isSlowRunFinished.get(), is(true));
+  }
+
+}
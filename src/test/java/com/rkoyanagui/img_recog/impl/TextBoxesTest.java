@@ -0,0 +1,131 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class TextBoxesTest
+{
+
+  @Test
+  void suppressOverlappingLowerScores()
+  {
+    final TextBoxes boxes = new TextBoxes(1);
+    boxes.add(0.7f, 0, 0, 100, 20);
+    boxes.add(0.9f, 5, 0, 105, 20);
+    boxes.add(0.8f, 300, 300, 400, 320);
+
+    final TextBoxes kept = boxes.suppressNonMaxima(0.4f);
+
+    assertThat(kept.size, is(2));
+    assertThat(kept.scores[0], is(0.9f));
+    assertThat(kept.left[0], is(5.0f));
+    assertThat(kept.scores[1], is(0.8f));
+    assertThat(kept.left[1], is(300.0f));
+  }
+
+  @Test
+  void suppressLikeBruteForce()
+  {
+    final TextBoxes boxes = randomBoxes(new Random(7), 500);
+
+    final TextBoxes kept = boxes.suppressNonMaxima(0.3f);
+
+    final List<Integer> order = IntStream.range(0, boxes.size).boxed()
+        .sorted(Comparator.comparing((Integer i) -> -boxes.scores[i]))
+        .collect(Collectors.toList());
+    final List<Integer> expected = new ArrayList<>();
+    for (final int i : order)
+    {
+      if (expected.stream().noneMatch(j -> iou(boxes, i, boxes, j) > 0.3f))
+      {
+        expected.add(i);
+      }
+    }
+    assertThat(kept.size, is(equalTo(expected.size())));
+    for (int k = 0; k < kept.size; k++)
+    {
+      final int i = expected.get(k);
+      assertThat(kept.left[k], is(boxes.left[i]));
+      assertThat(kept.top[k], is(boxes.top[i]));
+      assertThat(kept.scores[k], is(boxes.scores[i]));
+    }
+  }
+
+  @Test
+  void mergeChainOfOverlaps()
+  {
+    final TextBoxes boxes = new TextBoxes(3);
+    boxes.add(0.9f, 0, 0, 50, 20);
+    boxes.add(0.6f, 40, 0, 90, 20);
+    // Overlaps neither of the above, only the box enclosing both.
+    boxes.add(0.8f, 20, 19, 70, 40);
+    boxes.add(0.7f, 500, 500, 550, 520);
+
+    final TextBoxes merged = boxes.mergeOverlapping(0.0001f);
+
+    assertThat(merged.size, is(2));
+    assertThat(merged.toRectangle(0), is(new java.awt.Rectangle(500, 500, 50, 20)));
+    assertThat(merged.scores[0], is(0.7f));
+    assertThat(merged.toRectangle(1), is(new java.awt.Rectangle(0, 0, 90, 40)));
+    assertThat(merged.scores[1], is(0.6f));
+  }
+
+  @Test
+  void mergeUntilNoOverlapsAreLeft()
+  {
+    final TextBoxes boxes = randomBoxes(new Random(11), 400);
+
+    final TextBoxes merged = boxes.mergeOverlapping(0.05f);
+
+    for (int i = 0; i < merged.size; i++)
+    {
+      for (int j = i + 1; j < merged.size; j++)
+      {
+        assertThat(iou(merged, i, merged, j), is(lessThan(0.05f)));
+      }
+    }
+    for (int i = 0; i < boxes.size; i++)
+    {
+      final int box = i;
+      assertThat(IntStream.range(0, merged.size).anyMatch(j -> encloses(merged, j, boxes, box)),
+          is(true));
+    }
+  }
+
+  protected static TextBoxes randomBoxes(final Random random, final int n)
+  {
+    final TextBoxes boxes = new TextBoxes(n);
+    for (int i = 0; i < n; i++)
+    {
+      final float x = random.nextInt(1000);
+      final float y = random.nextInt(2000);
+      final float w = 20 + random.nextInt(150);
+      final float h = 10 + random.nextInt(30);
+      boxes.add(random.nextFloat(), x, y, x + w, y + h);
+    }
+    return boxes;
+  }
+
+  protected static float iou(final TextBoxes a, final int i, final TextBoxes b, final int j)
+  {
+    return TextBoxes.iou(a.left[i], a.top[i], a.right[i], a.bottom[i],
+        b.left[j], b.top[j], b.right[j], b.bottom[j]);
+  }
+
+  protected static boolean encloses(final TextBoxes a, final int i, final TextBoxes b, final int j)
+  {
+    return a.left[i] <= b.left[j] && a.top[i] <= b.top[j]
+        && a.right[i] >= b.right[j] && a.bottom[i] >= b.bottom[j];
+  }
+
+}
@@ -0,0 +1,76 @@
+package com.rkoyanagui.img_recog.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import com.rkoyanagui.img_recog.ImgUtils;
+import com.rkoyanagui.img_recog.Padding;
+import com.rkoyanagui.utils.Pair;
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+class TextProposalsTest
+{
+
+  protected static final Padding NO_PADDING = new Padding(0.0, 0.0, 0.0, 0.0);
+
+  @BeforeAll
+  static void initOpenCv()
+  {
+    ImgUtils.initOpenCv();
+  }
+
+  @Test
+  void proposeWordsByGradient()
+  {
+    assertProposesEveryWord(img -> TextProposals.gradient(img, NO_PADDING, 0.1f));
+  }
+
+  @Test
+  void proposeWordsByMser()
+  {
+    assertProposesEveryWord(img -> TextProposals.mser(img, NO_PADDING, 0.1f));
+  }
+
+  @Test
+  void proposeNothingOnBlankImage()
+  {
+    final Mat img = new Mat(400, 300, CvType.CV_8UC3, new Scalar(240, 240, 240));
+
+    assertThat(TextProposals.gradient(img, NO_PADDING, 0.1f).isEmpty(), is(true));
+    assertThat(TextProposals.mser(img, NO_PADDING, 0.1f).isEmpty(), is(true));
+  }
+
+  protected static void assertProposesEveryWord(
+      final Function<Mat, List<Pair<Float, Rectangle>>> proposals)
+  {
+    final Mat img = new Mat(800, 720, CvType.CV_8UC3, new Scalar(240, 240, 240));
+    putText(img, "Entrar", new Point(50, 200), new Scalar(20, 20, 20));
+    // Light text on a filled button.
+    Imgproc.rectangle(img, new Point(40, 450), new Point(680, 600), new Scalar(30, 120, 220), -1);
+    putText(img, "Criar", new Point(200, 550), new Scalar(255, 255, 255));
+
+    final List<Pair<Float, Rectangle>> boxes = proposals.apply(img);
+
+    assertThat(boxes.size(), is(2));
+    assertThat(boxes.get(0).b.contains(120, 180), is(true));
+    assertThat(boxes.get(1).b.contains(260, 530), is(true));
+  }
+
+  protected static void putText(final Mat img,
+                                final String text,
+                                final Point origin,
+                                final Scalar colour)
+  {
+    Imgproc.putText(img, text, origin, Imgproc.FONT_HERSHEY_SIMPLEX, 2.0, colour, 4);
+  }
+
+}